@@ -0,0 +1,115 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Data structures used by helper strategies on every evaluation
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HelperComponentsBenchmark {
+    private static final int QUERIES_NUMBER = 1 << 12;
+    private static final int MID_PRICE = 100_000;
+
+    @Param({"10", "200", "2000"})
+    public int bookDepth;
+
+    @Param({"1", "100", "500"})
+    public int workingOrders;
+
+    private PrimitiveOrderBook orderBook;
+    private WorkingOrdersIndex ordersIndex;
+    private RequestThrottle requestThrottle;
+
+    private final int[] queryLevels = new int[QUERIES_NUMBER];
+    private String[] orderIds;
+    private int queryIndex;
+    private long nowMs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        orderBook = new PrimitiveOrderBook();
+        for (int level = 0; level < bookDepth; level++) {
+            orderBook.onUpdate(true, MID_PRICE - 1 - level, 1 + random.nextInt(100));
+            orderBook.onUpdate(false, MID_PRICE + level, 1 + random.nextInt(100));
+        }
+
+        ordersIndex = new WorkingOrdersIndex();
+        orderIds = new String[workingOrders];
+        for (int i = 0; i < workingOrders; i++) {
+            orderIds[i] = "order" + i;
+            boolean isBuy = i % 2 == 0;
+            int distance = 1 + random.nextInt(bookDepth);
+            ordersIndex.update(orderIds[i], isBuy ? MID_PRICE - distance : MID_PRICE + distance, isBuy);
+        }
+
+        requestThrottle = new RequestThrottle(Layer1ApiHelperStrategyAbstract.REQUEST_DELAY_MS);
+
+        for (int i = 0; i < QUERIES_NUMBER; i++) {
+            queryLevels[i] = 1 + random.nextInt(bookDepth);
+        }
+    }
+
+    @Benchmark
+    public long topLevelsSum() {
+        return orderBook.getTopLevelsSum(true, nextQueryLevel());
+    }
+
+    @Benchmark
+    public long depthUpdate() {
+        int level = nextQueryLevel();
+        return orderBook.onUpdate(false, MID_PRICE + level - 1, level);
+    }
+
+    /**
+     * Orders further than a random distance from the best bid
+     */
+    @Benchmark
+    public void ordersRangeQuery(Blackhole blackhole) {
+        ordersIndex.forEachInRange(true, Integer.MIN_VALUE, MID_PRICE - nextQueryLevel(), blackhole::consume);
+    }
+
+    @Benchmark
+    public void orderUpdate() {
+        int i = queryIndex % workingOrders;
+        boolean isBuy = i % 2 == 0;
+        int distance = nextQueryLevel();
+        ordersIndex.update(orderIds[i], isBuy ? MID_PRICE - distance : MID_PRICE + distance, isBuy);
+    }
+
+    /**
+     * Clock advances by 1 ms every 64 requests, so both allowed and throttled requests are measured
+     */
+    @Benchmark
+    public boolean throttleAcquire() {
+        int i = queryIndex;
+        if ((i & 63) == 0) {
+            nowMs++;
+        }
+        return requestThrottle.tryAcquire(orderIds[i % workingOrders], nextQueryLevel() & 7, nowMs);
+    }
+
+    private int nextQueryLevel() {
+        return queryLevels[queryIndex++ & (QUERIES_NUMBER - 1)];
+    }
+}
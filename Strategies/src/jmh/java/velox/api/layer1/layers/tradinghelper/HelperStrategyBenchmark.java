@@ -0,0 +1,208 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoBuilder;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.data.OrderStatus;
+import velox.api.layer1.data.OrderType;
+import velox.api.layer1.data.TradeInfo;
+
+/**
+ * Drives a helper strategy with synthetic market data and order updates.
+ * Run with <code>gradle jmh</code>, allocation rate is reported by the gc
+ * profiler enabled there by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HelperStrategyBenchmark {
+    public enum StrategyType {
+        ESCAPE,
+        CHASE,
+        EXECUTE
+    }
+
+    private static final int EVENTS_NUMBER = 1 << 16;
+    private static final int MID_PRICE = 100_000;
+
+    @Param({"ESCAPE", "CHASE", "EXECUTE"})
+    public StrategyType strategyType;
+
+    @Param({"10", "200", "2000"})
+    public int bookDepth;
+
+    @Param({"1", "100", "500"})
+    public int workingOrders;
+
+    @Param({"1", "16"})
+    public int aliasesNumber;
+
+    private StubLayer1ApiProvider stubProvider;
+    private Layer1ApiHelperStrategyAbstract<?> strategy;
+    private String[] aliases;
+
+    private final boolean[] eventIsTrade = new boolean[EVENTS_NUMBER];
+    private final boolean[] eventIsBid = new boolean[EVENTS_NUMBER];
+    private final int[] eventPrice = new int[EVENTS_NUMBER];
+    private final int[] eventSize = new int[EVENTS_NUMBER];
+    private final TradeInfo tradeInfo = new TradeInfo(false, true, true, true);
+    private int eventIndex;
+
+    private OrderInfoUpdate[] orderUpdates;
+    private int orderUpdateIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stubProvider = new StubLayer1ApiProvider();
+        strategy = createStrategy();
+
+        HelperStrategyOptions options = new HelperStrategyOptions();
+        options.setAsyncOrderDispatch(false);
+        options.setLatencyLogIntervalSeconds(0);
+        strategy.setOptions(options);
+        strategy.acceptSettingsInterface(stubProvider.getSettingsAccess());
+        strategy.isWorking = true;
+
+        aliases = new String[aliasesNumber];
+        for (int i = 0; i < aliasesNumber; i++) {
+            aliases[i] = "BENCH" + i;
+            strategy.onInstrumentAdded(aliases[i], new InstrumentInfo(aliases[i], "BENCH", "", 1, 1, aliases[i], false));
+            strategy.onCbUseInstrumentSettingsClicked(aliases[i], true);
+            for (int level = 0; level < bookDepth; level++) {
+                strategy.onDepth(aliases[i], true, MID_PRICE - 1 - level, 10 + level % 7);
+                strategy.onDepth(aliases[i], false, MID_PRICE + level, 10 + level % 5);
+            }
+        }
+
+        orderUpdates = new OrderInfoUpdate[workingOrders * 2];
+        for (int i = 0; i < workingOrders; i++) {
+            boolean isBuy = i % 2 == 0;
+            int distance = 1 + i / 2 % bookDepth;
+            int price = isBuy ? MID_PRICE - distance : MID_PRICE + distance;
+            String alias = aliases[i % aliasesNumber];
+            String orderId = "order" + i;
+            strategy.onOrderUpdated(createOrderUpdate(alias, orderId, isBuy, price));
+            // updates moving the order by one tick and back
+            orderUpdates[2 * i] = createOrderUpdate(alias, orderId, isBuy, isBuy ? price - 1 : price + 1);
+            orderUpdates[2 * i + 1] = createOrderUpdate(alias, orderId, isBuy, price);
+        }
+
+        generateMarketData(new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        strategy.finish();
+    }
+
+    /**
+     * One depth update or trade, including strategy evaluation and order updates it causes
+     */
+    @Benchmark
+    public long marketData() {
+        int i = eventIndex++ & (EVENTS_NUMBER - 1);
+        String alias = aliases[i % aliasesNumber];
+        if (eventIsTrade[i]) {
+            strategy.onTrade(alias, eventPrice[i], eventSize[i], tradeInfo);
+        } else {
+            strategy.onDepth(alias, eventIsBid[i], eventPrice[i], eventSize[i]);
+        }
+        return stubProvider.getUpdateOrderCallsNumber();
+    }
+
+    /**
+     * One working order price change, including strategy evaluation
+     */
+    @Benchmark
+    public long orderUpdate() {
+        int i = orderUpdateIndex++;
+        if (orderUpdateIndex == workingOrders * 2) {
+            orderUpdateIndex = 0;
+        }
+        strategy.onOrderUpdated(orderUpdates[i]);
+        return stubProvider.getUpdateOrderCallsNumber();
+    }
+
+    private Layer1ApiHelperStrategyAbstract<?> createStrategy() {
+        switch (strategyType) {
+        case ESCAPE:
+            return new Layer1ApiHelperEscapeStrategy(stubProvider.getProvider());
+        case CHASE:
+            return new Layer1ApiHelperChaseStrategy(stubProvider.getProvider());
+        case EXECUTE:
+            return new Layer1ApiHelperExecuteStrategy(stubProvider.getProvider());
+        default:
+            throw new IllegalArgumentException("Unknown strategy: " + strategyType);
+        }
+    }
+
+    private OrderInfoUpdate createOrderUpdate(String alias, String orderId, boolean isBuy, int price) {
+        return new OrderInfoBuilder(alias, orderId, isBuy, OrderType.LMT, orderId, false)
+                .setStatus(OrderStatus.WORKING)
+                .setLimitPrice(price)
+                .setUnfilled(1)
+                .build();
+    }
+
+    /**
+     * Random walk of the mid price with level updates within book depth and
+     * trades at the best price
+     */
+    private void generateMarketData(Random random) {
+        int mid = MID_PRICE;
+        int i = 0;
+        while (i < EVENTS_NUMBER) {
+            if (random.nextInt(100) == 0 && i + 2 <= EVENTS_NUMBER) {
+                boolean isUp = random.nextBoolean();
+                // level that changes side is removed first, so the book is never crossed
+                if (isUp) {
+                    setDepthEvent(i++, false, mid, 0);
+                    mid++;
+                    setDepthEvent(i++, true, mid - 1, 1 + random.nextInt(100));
+                } else {
+                    setDepthEvent(i++, true, mid - 1, 0);
+                    mid--;
+                    setDepthEvent(i++, false, mid, 1 + random.nextInt(100));
+                }
+            } else if (random.nextInt(10) == 0) {
+                eventIsTrade[i] = true;
+                eventPrice[i] = random.nextBoolean() ? mid : mid - 1;
+                eventSize[i] = 1 + random.nextInt(10);
+                i++;
+            } else {
+                boolean isBid = random.nextBoolean();
+                int distance = random.nextInt(bookDepth);
+                int price = isBid ? mid - 1 - distance : mid + distance;
+                int size = distance != 0 && random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(100);
+                setDepthEvent(i++, isBid, price, size);
+            }
+        }
+    }
+
+    private void setDepthEvent(int i, boolean isBid, int price, int size) {
+        eventIsTrade[i] = false;
+        eventIsBid[i] = isBid;
+        eventPrice[i] = price;
+        eventSize[i] = size;
+    }
+}
@@ -0,0 +1,31 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.messages.indicators.SettingsAccess;
+
+/**
+ * Provider and settings storage for benchmarks. The provider only counts
+ * order updates (see {@link StubProviders}).
+ */
+public class StubLayer1ApiProvider {
+    private final LongAdder updateOrderCounter = new LongAdder();
+    private final Layer1ApiProvider provider = StubProviders.createProvider(parameters -> updateOrderCounter.increment());
+    private final SettingsAccess settingsAccess = StubProviders.createSettingsAccess();
+
+    public Layer1ApiProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return settings access creating default settings for each request
+     */
+    public SettingsAccess getSettingsAccess() {
+        return settingsAccess;
+    }
+
+    public long getUpdateOrderCallsNumber() {
+        return updateOrderCounter.sum();
+    }
+}
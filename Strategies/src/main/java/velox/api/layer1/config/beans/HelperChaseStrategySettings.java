@@ -10,12 +10,18 @@ public class HelperChaseStrategySettings extends HelperStrategySettings {
     };
     
     private static final int DISTANCE_DEFAULT = 3;
+    private static final int MIN_STEP_DEFAULT = 1;
+    private static final int PACING_INTERVAL_MS_DEFAULT = 0;
     
     private static final ChaseMode MODE_DEFAULT = ChaseMode.BEST_PRICE;
     
     private int distance = DISTANCE_DEFAULT;
     
     private ChaseMode mode = MODE_DEFAULT;
+    
+    private int minStep = MIN_STEP_DEFAULT;
+    
+    private int pacingIntervalMs = PACING_INTERVAL_MS_DEFAULT;
 
     public HelperChaseStrategySettings() {
         super();
@@ -25,6 +31,8 @@ public class HelperChaseStrategySettings extends HelperStrategySettings {
         super(settings);
         this.distance = settings.distance;
         this.mode = settings.mode;
+        this.minStep = settings.minStep;
+        this.pacingIntervalMs = settings.pacingIntervalMs;
     }
     
     public int getDistance() {
@@ -42,4 +50,27 @@ public class HelperChaseStrategySettings extends HelperStrategySettings {
     public void setMode(ChaseMode mode) {
         this.mode = mode;
     }
+
+    /**
+     * Order is only moved if it is at least this many ticks further than the
+     * allowed distance, 1 moves on every tick
+     */
+    public int getMinStep() {
+        return minStep;
+    }
+
+    public void setMinStep(int minStep) {
+        this.minStep = minStep;
+    }
+
+    /**
+     * Minimum time between 2 moves of the same order, 0 for no limit
+     */
+    public int getPacingIntervalMs() {
+        return pacingIntervalMs;
+    }
+
+    public void setPacingIntervalMs(int pacingIntervalMs) {
+        this.pacingIntervalMs = pacingIntervalMs;
+    }
 }
@@ -3,7 +3,7 @@ package velox.api.layer1.config.beans;
 import velox.api.layer1.settings.StrategySettingsVersion;
 
 @StrategySettingsVersion(currentVersion = 1, compatibleVersions = {})
-public class HelperEscapeStrategySettings extends HelperStrategySettings {
+public class HelperEscapeStrategySettings extends HelperImbalanceStrategySettings {
     public static enum Mode {
         CANCEL,
         MOVE
@@ -3,7 +3,7 @@ package velox.api.layer1.config.beans;
 import velox.api.layer1.settings.StrategySettingsVersion;
 
 @StrategySettingsVersion(currentVersion = 1, compatibleVersions = {})
-public class HelperExecuteStrategySettings extends HelperStrategySettings {
+public class HelperExecuteStrategySettings extends HelperImbalanceStrategySettings {
     private static final int LEVELS_NUMBER_DEFAULT = 3;
     private static final int TICKS_NUMBER_DEFAULT = 1;
     private static final int PERCENT_DEFAULT = 200;
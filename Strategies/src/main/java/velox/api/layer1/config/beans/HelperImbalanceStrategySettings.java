@@ -0,0 +1,57 @@
+package velox.api.layer1.config.beans;
+
+/**
+ * Settings of helper strategies acting on the volume imbalance between book
+ * sides (Escape, Execute)
+ */
+public class HelperImbalanceStrategySettings extends HelperStrategySettings {
+    private static final int SMOOTHING_HALF_LIFE_MS_DEFAULT = 500;
+    private static final int HYSTERESIS_PERCENT_DEFAULT = 10;
+    
+    private boolean isSmoothingEnabled = false;
+    private int smoothingHalfLifeMs = SMOOTHING_HALF_LIFE_MS_DEFAULT;
+    private int hysteresisPercent = HYSTERESIS_PERCENT_DEFAULT;
+    
+    public HelperImbalanceStrategySettings() {
+        super();
+    }
+    
+    public HelperImbalanceStrategySettings(HelperImbalanceStrategySettings settings) {
+        super(settings);
+        this.isSmoothingEnabled = settings.isSmoothingEnabled;
+        this.smoothingHalfLifeMs = settings.smoothingHalfLifeMs;
+        this.hysteresisPercent = settings.hysteresisPercent;
+    }
+
+    /**
+     * If true, the condition uses volumes averaged over time instead of the
+     * current ones, and stays satisfied until the imbalance weakens by
+     * {@link #getHysteresisPercent()}
+     */
+    public boolean isSmoothingEnabled() {
+        return isSmoothingEnabled;
+    }
+
+    public void setSmoothingEnabled(boolean isSmoothingEnabled) {
+        this.isSmoothingEnabled = isSmoothingEnabled;
+    }
+
+    /**
+     * Time after which the weight of a volume in the average halves
+     */
+    public int getSmoothingHalfLifeMs() {
+        return smoothingHalfLifeMs;
+    }
+
+    public void setSmoothingHalfLifeMs(int smoothingHalfLifeMs) {
+        this.smoothingHalfLifeMs = smoothingHalfLifeMs;
+    }
+
+    public int getHysteresisPercent() {
+        return hysteresisPercent;
+    }
+
+    public void setHysteresisPercent(int hysteresisPercent) {
+        this.hysteresisPercent = hysteresisPercent;
+    }
+}
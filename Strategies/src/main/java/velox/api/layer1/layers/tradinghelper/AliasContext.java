@@ -0,0 +1,203 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import velox.api.layer1.config.beans.HelperStrategySettings;
+
+/**
+ * Everything a helper strategy knows about one instrument. Resolved once per
+ * callback and passed to {@link Layer1ApiHelperStrategyAbstract#doActionForAlias(AliasContext)},
+ * so the hot path does not look anything up by alias.
+ * Mutable state is only accessed with exclusive access to the instrument
+ * (see {@link Layer1ApiHelperStrategyAbstract#runForAlias(AliasContext, Runnable)}).
+ *
+ * @param <V> settings class
+ */
+public class AliasContext<V extends HelperStrategySettings> {
+    private final String alias;
+    private final double pips;
+    private final AliasEventLoop eventLoop;
+
+    private final AliasMarketState marketState;
+    /** Market state as of the evaluation in progress */
+    private final MarketSnapshot marketSnapshot;
+    /** {@link AliasMarketState#getBboVersion()} at the last depth update seen by this strategy */
+    private long seenBboVersion;
+    /** Number of events changing the market state received by this strategy, see {@link AliasMarketState#tryApply(long)} */
+    private long eventSequence;
+    private final RequestThrottle requestThrottle = new RequestThrottle(Layer1ApiHelperStrategyAbstract.REQUEST_DELAY_MS);
+    private final ImbalanceSignal imbalanceSignal = new ImbalanceSignal();
+    private final OrderPacer orderPacer = new OrderPacer();
+    private final PendingMoves pendingMoves = new PendingMoves();
+    /** Account order messages are counted against in {@link OrderMessageBudget} */
+    private String account;
+    /** Alias handle in {@link DecisionFlightRecorder} of the strategy */
+    private int flightRecorderHandle;
+
+    private volatile V settings;
+
+    /** Price of the last trade in ticks, NaN if unknown */
+    private double lastTradePrice = Double.NaN;
+
+    /** True if market data changed after last evaluation (coalescing mode) */
+    private volatile boolean isDirty;
+    
+    private final HelperStrategyLatencies latencies = new HelperStrategyLatencies();
+    /** Arrival time of the first event not evaluated yet (coalescing mode), 0 if unknown */
+    private long pendingEventTimeNs;
+    /** Arrival time of the event that caused evaluation in progress, 0 if unknown */
+    private long evaluationEventTimeNs;
+
+    /**
+     * @param isMarketStateShared true if other strategies may change the
+     *            market state concurrently
+     */
+    public AliasContext(String alias, double pips, V settings, AliasEventLoop eventLoop, AliasMarketState marketState,
+            boolean isMarketStateShared) {
+        this.alias = alias;
+        this.pips = pips;
+        this.settings = settings;
+        this.eventLoop = eventLoop;
+        this.marketState = marketState;
+        marketSnapshot = new MarketSnapshot(isMarketStateShared);
+        eventSequence = marketState.getReceivedSequence();
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public double getPips() {
+        return pips;
+    }
+
+    /**
+     * @return loop of this instrument in sharded mode, null otherwise
+     */
+    public AliasEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * @return book and orders of the instrument, possibly shared with other
+     *         strategies. Must only be accessed holding its monitor.
+     */
+    public AliasMarketState getMarketState() {
+        return marketState;
+    }
+
+    public PrimitiveOrderBook getOrderBook() {
+        return marketState.getOrderBook();
+    }
+
+    public WorkingOrdersIndex getOrders() {
+        return marketState.getOrders();
+    }
+
+    /**
+     * @return state the strategy evaluates on, taken when the evaluation
+     *         started, can be read without holding any monitor
+     */
+    public MarketSnapshot getMarketSnapshot() {
+        return marketSnapshot;
+    }
+
+    long getSeenBboVersion() {
+        return seenBboVersion;
+    }
+
+    void setSeenBboVersion(long seenBboVersion) {
+        this.seenBboVersion = seenBboVersion;
+    }
+
+    /**
+     * Numbers an event changing the market state, should be called by the
+     * thread delivering events, in the order those are received
+     */
+    long nextEventSequence() {
+        eventSequence++;
+        marketState.onEventReceived(eventSequence);
+        return eventSequence;
+    }
+
+    public RequestThrottle getRequestThrottle() {
+        return requestThrottle;
+    }
+
+    public ImbalanceSignal getImbalanceSignal() {
+        return imbalanceSignal;
+    }
+
+    public OrderPacer getOrderPacer() {
+        return orderPacer;
+    }
+
+    /**
+     * @return buffer for requests decided by an evaluation, cleared by the
+     *         evaluation using it
+     */
+    public PendingMoves getPendingMoves() {
+        return pendingMoves;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    void setAccount(String account) {
+        this.account = account;
+    }
+
+    int getFlightRecorderHandle() {
+        return flightRecorderHandle;
+    }
+
+    void setFlightRecorderHandle(int flightRecorderHandle) {
+        this.flightRecorderHandle = flightRecorderHandle;
+    }
+
+    /**
+     * @return immutable snapshot of settings, must not be modified
+     */
+    public V getSettings() {
+        return settings;
+    }
+
+    public void setSettings(V settings) {
+        this.settings = settings;
+    }
+
+    public double getLastTradePrice() {
+        return lastTradePrice;
+    }
+
+    public void setLastTradePrice(double lastTradePrice) {
+        this.lastTradePrice = lastTradePrice;
+    }
+
+    boolean isDirty() {
+        return isDirty;
+    }
+
+    void setDirty(boolean isDirty) {
+        this.isDirty = isDirty;
+    }
+    
+    public HelperStrategyLatencies getLatencies() {
+        return latencies;
+    }
+    
+    long getPendingEventTimeNs() {
+        return pendingEventTimeNs;
+    }
+    
+    void setPendingEventTimeNs(long pendingEventTimeNs) {
+        this.pendingEventTimeNs = pendingEventTimeNs;
+    }
+    
+    long getEvaluationEventTimeNs() {
+        return evaluationEventTimeNs;
+    }
+    
+    void setEvaluationEventTimeNs(long evaluationEventTimeNs) {
+        this.evaluationEventTimeNs = evaluationEventTimeNs;
+    }
+}
@@ -0,0 +1,65 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import velox.api.layer1.common.Log;
+
+/**
+ * Single-writer event loop of one instrument. Any thread can submit tasks
+ * (multiple producers), but at most one thread of the underlying executor
+ * drains the queue at any moment, in submission order. State touched only
+ * from tasks of one loop therefore needs no locking, while loops of
+ * different instruments run in parallel.
+ * Optional batch end callback runs on the loop after the last task of a
+ * burst, when no more tasks are queued.
+ */
+public class AliasEventLoop implements Executor {
+    private final String alias;
+    private final Executor executor;
+    private final Runnable onBatchEnd;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    /** Number of submitted tasks that were not executed yet */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    public AliasEventLoop(String alias, Executor executor) {
+        this(alias, executor, null);
+    }
+
+    public AliasEventLoop(String alias, Executor executor, Runnable onBatchEnd) {
+        this.alias = alias;
+        this.executor = executor;
+        this.onBatchEnd = onBatchEnd;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queue.offer(task);
+        if (pendingTasks.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    public int getPendingTasksNumber() {
+        return pendingTasks.get();
+    }
+
+    private void drain() {
+        do {
+            runSafely(queue.poll());
+            if (onBatchEnd != null && pendingTasks.get() == 1) {
+                runSafely(onBatchEnd);
+            }
+        } while (pendingTasks.decrementAndGet() != 0);
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.error("Helper strategy: failed to process event for " + alias, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order book and working orders of one instrument. Can be shared by several
+ * helper strategies through {@link SharedMarketStateService}. Every subscriber
+ * numbers the events changing the state in the order it receives them, and
+ * whichever subscriber gets an event first applies it (see
+ * {@link #tryApply(long)}), so each strategy evaluates on the state with the
+ * event applied no matter where it is in the layers chain. This relies on all
+ * subscribers receiving the same events in the same order, as strategies of
+ * one chain do. All access is done while holding the monitor of this object.
+ */
+public class AliasMarketState {
+    private final String alias;
+
+    private final PrimitiveOrderBook orderBook = new PrimitiveOrderBook();
+    private final WorkingOrdersIndex orders = new WorkingOrdersIndex();
+    /** Incremented on each change of the best prices */
+    private long bboVersion;
+
+    /** Sequence number of the last applied event */
+    private long appliedSequence;
+    /** Highest sequence number given to an event by any subscriber, written by the thread delivering events */
+    private volatile long receivedSequence;
+
+    /** Guarded by {@link SharedMarketStateService} for shared states */
+    private final List<Object> subscribers = new ArrayList<>();
+
+    public AliasMarketState(String alias) {
+        this.alias = alias;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public PrimitiveOrderBook getOrderBook() {
+        return orderBook;
+    }
+
+    public WorkingOrdersIndex getOrders() {
+        return orders;
+    }
+
+    public long getBboVersion() {
+        return bboVersion;
+    }
+
+    /**
+     * @param sequence number of the event as counted by the subscriber
+     * @return true if the event was not applied yet and the caller has to apply
+     *         it, false if another subscriber already did
+     */
+    public boolean tryApply(long sequence) {
+        if (sequence <= appliedSequence) {
+            return false;
+        }
+        appliedSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Should be called by subscribers when they number an event, does not
+     * require the monitor
+     */
+    void onEventReceived(long sequence) {
+        if (sequence > receivedSequence) {
+            receivedSequence = sequence;
+        }
+    }
+
+    /**
+     * @return number of events received so far, where a new subscriber starts
+     *         counting from
+     */
+    long getReceivedSequence() {
+        return receivedSequence;
+    }
+
+    public void onDepth(boolean isBid, int price, int size) {
+        boolean hadBbo = orderBook.hasBbo();
+        int bestBid = orderBook.getBestBid();
+        int bestAsk = orderBook.getBestAsk();
+
+        orderBook.onUpdate(isBid, price, size);
+
+        if (hadBbo != orderBook.hasBbo() || bestBid != orderBook.getBestBid() || bestAsk != orderBook.getBestAsk()) {
+            bboVersion++;
+        }
+    }
+
+    void addSubscriber(Object subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * @return true if there are no subscribers left
+     */
+    boolean removeSubscriber(Object subscriber) {
+        subscribers.remove(subscriber);
+        return subscribers.isEmpty();
+    }
+}
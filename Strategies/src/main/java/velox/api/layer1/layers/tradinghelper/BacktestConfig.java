@@ -0,0 +1,94 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Parameters of the simulation in {@link HelperStrategyBacktest}. Helper
+ * strategies only manage orders placed by the user, so the backtest keeps a
+ * number of working orders on each side at a distance from the best price,
+ * placing new ones when orders are filled or cancelled.
+ */
+public class BacktestConfig {
+    private int ordersPerSide = 1;
+    private int orderDistance = 2;
+    private int orderSize = 1;
+    private long orderReplaceDelayMs = 1000;
+    private long orderLatencyMs = 10;
+    private long adverseFillHorizonMs = 1000;
+
+    public BacktestConfig() {
+    }
+
+    public BacktestConfig(BacktestConfig config) {
+        this.ordersPerSide = config.ordersPerSide;
+        this.orderDistance = config.orderDistance;
+        this.orderSize = config.orderSize;
+        this.orderReplaceDelayMs = config.orderReplaceDelayMs;
+        this.orderLatencyMs = config.orderLatencyMs;
+        this.adverseFillHorizonMs = config.adverseFillHorizonMs;
+    }
+
+    /**
+     * Number of working orders kept on each side of each instrument
+     */
+    public int getOrdersPerSide() {
+        return ordersPerSide;
+    }
+
+    public void setOrdersPerSide(int ordersPerSide) {
+        this.ordersPerSide = Math.max(0, ordersPerSide);
+    }
+
+    /**
+     * Distance in ticks from the best price of the side for new orders,
+     * further orders are placed one tick apart
+     */
+    public int getOrderDistance() {
+        return orderDistance;
+    }
+
+    public void setOrderDistance(int orderDistance) {
+        this.orderDistance = orderDistance;
+    }
+
+    public int getOrderSize() {
+        return orderSize;
+    }
+
+    public void setOrderSize(int orderSize) {
+        this.orderSize = Math.max(1, orderSize);
+    }
+
+    /**
+     * Time after an order is filled or cancelled before a replacement is placed
+     */
+    public long getOrderReplaceDelayMs() {
+        return orderReplaceDelayMs;
+    }
+
+    public void setOrderReplaceDelayMs(long orderReplaceDelayMs) {
+        this.orderReplaceDelayMs = Math.max(0, orderReplaceDelayMs);
+    }
+
+    /**
+     * Time between the strategy sending a cancel or move and the order
+     * changing at the simulated exchange
+     */
+    public long getOrderLatencyMs() {
+        return orderLatencyMs;
+    }
+
+    public void setOrderLatencyMs(long orderLatencyMs) {
+        this.orderLatencyMs = Math.max(0, orderLatencyMs);
+    }
+
+    /**
+     * A fill is adverse if this long after it the mid price is worse than the
+     * fill price for the filled side
+     */
+    public long getAdverseFillHorizonMs() {
+        return adverseFillHorizonMs;
+    }
+
+    public void setAdverseFillHorizonMs(long adverseFillHorizonMs) {
+        this.adverseFillHorizonMs = Math.max(0, adverseFillHorizonMs);
+    }
+}
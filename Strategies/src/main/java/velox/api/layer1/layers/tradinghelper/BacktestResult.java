@@ -0,0 +1,93 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Outcome of a {@link HelperStrategyBacktest} run
+ */
+public class BacktestResult {
+    long eventsNumber;
+    long wallTimeNs;
+    long placedOrders;
+    long moveRequests;
+    long cancelRequests;
+    long otherRequests;
+    long rejectedRequests;
+    long fills;
+    long filledVolume;
+    long checkedFills;
+    long adverseFills;
+
+    public long getEventsNumber() {
+        return eventsNumber;
+    }
+
+    public long getWallTimeNs() {
+        return wallTimeNs;
+    }
+
+    public double getEventsPerSecond() {
+        return wallTimeNs == 0 ? 0 : eventsNumber * 1e9 / wallTimeNs;
+    }
+
+    /**
+     * @return orders placed by the simulation (not by the strategy)
+     */
+    public long getPlacedOrders() {
+        return placedOrders;
+    }
+
+    public long getMoveRequests() {
+        return moveRequests;
+    }
+
+    public long getCancelRequests() {
+        return cancelRequests;
+    }
+
+    public long getOtherRequests() {
+        return otherRequests;
+    }
+
+    /**
+     * @return all order messages sent by the strategy
+     */
+    public long getMessagesNumber() {
+        return moveRequests + cancelRequests + otherRequests;
+    }
+
+    /**
+     * @return requests for orders that were already filled or cancelled when the request arrived
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    public long getFills() {
+        return fills;
+    }
+
+    public long getFilledVolume() {
+        return filledVolume;
+    }
+
+    /**
+     * @return share of fills after which the mid price moved against the
+     *         filled side (see {@link BacktestConfig#getAdverseFillHorizonMs()}),
+     *         NaN if there were no fills to check
+     */
+    public double getAdverseFillRate() {
+        return checkedFills == 0 ? Double.NaN : (double) adverseFills / checkedFills;
+    }
+
+    public String getSummary() {
+        return String.format("%d events in %.3f s (%.0f events/s); messages %d (moves %d, cancels %d, other %d, rejected %d); "
+                + "orders placed %d; fills %d, volume %d, adverse %.1f%%",
+                eventsNumber, wallTimeNs / 1e9, getEventsPerSecond(),
+                getMessagesNumber(), moveRequests, cancelRequests, otherRequests, rejectedRequests,
+                placedOrders, fills, filledVolume, getAdverseFillRate() * 100);
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
@@ -0,0 +1,73 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+
+/**
+ * Fenwick (binary indexed) tree over a fixed number of slots. Used by
+ * {@link PrimitiveOrderBook} to answer volume of any contiguous range of
+ * price levels in O(log n) instead of walking level by level.
+ */
+public class CumulativeDepthIndex {
+    private final long[] tree;
+
+    public CumulativeDepthIndex(int size) {
+        tree = new long[size + 1];
+    }
+
+    public int size() {
+        return tree.length - 1;
+    }
+
+    public void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return sum of slots [0, index]
+     */
+    public long prefixSum(int index) {
+        long result = 0;
+        for (int i = index + 1; i > 0; i -= i & -i) {
+            result += tree[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return sum of slots [fromIndex, toIndex]
+     */
+    public long rangeSum(int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            return 0;
+        }
+        long result = prefixSum(toIndex);
+        if (fromIndex > 0) {
+            result -= prefixSum(fromIndex - 1);
+        }
+        return result;
+    }
+
+    public void clear() {
+        Arrays.fill(tree, 0);
+    }
+
+    /**
+     * Replaces content of the tree with given values in O(n)
+     */
+    public void build(long[] values) {
+        if (values.length != size()) {
+            throw new IllegalArgumentException("Expected " + size() + " values, got " + values.length);
+        }
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] = values[i - 1];
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest decisions of a helper strategy in a preallocated off-heap
+ * ring of fixed-size binary records, so it can be reconstructed afterwards
+ * why an order was moved or cancelled. Recording is a few absolute stores and
+ * one atomic increment, without allocation. Older records are overwritten.
+ * <p>
+ * Records can be dumped to a file with {@link #dump(Path)} and printed with
+ * {@link #print(Path, PrintStream)} (or {@link #main(String[])}). Records
+ * written while dumping may appear torn in the dump.
+ */
+public class DecisionFlightRecorder {
+    public static final byte ACTION_NONE = 0;
+    public static final byte ACTION_CANCEL = 1;
+    public static final byte ACTION_MOVE = 2;
+
+    /** Largest capacity whose ring still fits into a single buffer */
+    public static final int MAX_CAPACITY = 1 << 25;
+
+    public static final byte CONDITION_BID = 1;
+    public static final byte CONDITION_ASK = 2;
+
+    private static final int FILE_MAGIC = 0x48534652; // "HSFR"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 24;
+
+    static final int RECORD_SIZE = 48;
+    private static final int TIME_OFFSET = 0;
+    private static final int VOLUME_BID_OFFSET = 8;
+    private static final int VOLUME_ASK_OFFSET = 16;
+    private static final int ALIAS_HANDLE_OFFSET = 24;
+    private static final int TARGET_LEVEL_OFFSET = 28;
+    private static final int ORDER_LEVEL_OFFSET = 32;
+    private static final int ORDER_ID_HASH_OFFSET = 36;
+    private static final int ACTION_OFFSET = 40;
+    private static final int CONDITIONS_OFFSET = 41;
+
+    private final ByteBuffer buffer;
+    private final int mask;
+    private final AtomicLong writeIndex = new AtomicLong();
+    /** Converts {@link System#nanoTime()} to nanoseconds since epoch */
+    private final long epochOffsetNs = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+
+    private final Map<String, Integer> aliasHandles = new HashMap<>();
+    private final List<String> aliases = new ArrayList<>();
+
+    /**
+     * @param capacity number of records kept, rounded up to a power of 2 and
+     *            limited by {@link #MAX_CAPACITY}
+     */
+    public DecisionFlightRecorder(int capacity) {
+        int recordsNumber = Integer.highestOneBit(Math.max(1, Math.min(MAX_CAPACITY, capacity) - 1)) << 1;
+        buffer = ByteBuffer.allocateDirect(recordsNumber * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        mask = recordsNumber - 1;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return number of records made since creation, including overwritten ones
+     */
+    public long getRecordsNumber() {
+        return writeIndex.get();
+    }
+
+    /**
+     * @return handle to pass to record methods, same for the same alias
+     */
+    public synchronized int registerAlias(String alias) {
+        Integer handle = aliasHandles.get(alias);
+        if (handle == null) {
+            handle = aliases.size();
+            aliases.add(alias);
+            aliasHandles.put(alias, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Records evaluation of the strategy condition
+     *
+     * @param conditions combination of {@link #CONDITION_BID} and {@link #CONDITION_ASK}
+     */
+    public void recordEvaluation(int aliasHandle, long volumeBid, long volumeAsk, int conditions) {
+        int offset = nextOffset();
+        buffer.putLong(offset + TIME_OFFSET, System.nanoTime() + epochOffsetNs);
+        buffer.putLong(offset + VOLUME_BID_OFFSET, volumeBid);
+        buffer.putLong(offset + VOLUME_ASK_OFFSET, volumeAsk);
+        buffer.putInt(offset + ALIAS_HANDLE_OFFSET, aliasHandle);
+        buffer.putInt(offset + TARGET_LEVEL_OFFSET, 0);
+        buffer.putInt(offset + ORDER_LEVEL_OFFSET, 0);
+        buffer.putInt(offset + ORDER_ID_HASH_OFFSET, 0);
+        buffer.put(offset + ACTION_OFFSET, ACTION_NONE);
+        buffer.put(offset + CONDITIONS_OFFSET, (byte) conditions);
+    }
+
+    /**
+     * Records order update sent by the strategy. Volumes and conditions are
+     * taken from the last evaluation of the instrument by the reader.
+     *
+     * @param action {@link #ACTION_CANCEL} or {@link #ACTION_MOVE}
+     * @param orderLevel price of the order in ticks before the action
+     * @param targetLevel new price in ticks for moves
+     */
+    public void recordAction(int aliasHandle, String orderId, byte action, int orderLevel, int targetLevel) {
+        int offset = nextOffset();
+        buffer.putLong(offset + TIME_OFFSET, System.nanoTime() + epochOffsetNs);
+        buffer.putLong(offset + VOLUME_BID_OFFSET, 0);
+        buffer.putLong(offset + VOLUME_ASK_OFFSET, 0);
+        buffer.putInt(offset + ALIAS_HANDLE_OFFSET, aliasHandle);
+        buffer.putInt(offset + TARGET_LEVEL_OFFSET, targetLevel);
+        buffer.putInt(offset + ORDER_LEVEL_OFFSET, orderLevel);
+        buffer.putInt(offset + ORDER_ID_HASH_OFFSET, orderId.hashCode());
+        buffer.put(offset + ACTION_OFFSET, action);
+        buffer.put(offset + CONDITIONS_OFFSET, (byte) 0);
+    }
+
+    private int nextOffset() {
+        return (int) (writeIndex.getAndIncrement() & mask) * RECORD_SIZE;
+    }
+
+    /**
+     * Writes kept records (oldest first) and alias names to a memory mapped file
+     *
+     * @return number of records written
+     */
+    public int dump(Path file) throws IOException {
+        long endIndex = writeIndex.get();
+        int recordsNumber = (int) Math.min(endIndex, getCapacity());
+        long startIndex = endIndex - recordsNumber;
+
+        byte[][] aliasBytes;
+        synchronized (this) {
+            aliasBytes = new byte[aliases.size()][];
+            for (int i = 0; i < aliasBytes.length; i++) {
+                aliasBytes[i] = aliases.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        long aliasesSize = 4;
+        for (byte[] bytes: aliasBytes) {
+            aliasesSize += 2 + bytes.length;
+        }
+
+        long recordsSize = (long) recordsNumber * RECORD_SIZE;
+        long fileSize = FILE_HEADER_SIZE + recordsSize + aliasesSize;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.putInt(FILE_MAGIC);
+            mapped.putInt(FILE_VERSION);
+            mapped.putInt(RECORD_SIZE);
+            mapped.putInt(recordsNumber);
+            mapped.putLong(FILE_HEADER_SIZE + recordsSize);
+
+            ByteBuffer source = buffer.duplicate();
+            for (long index = startIndex; index < endIndex; ) {
+                int offset = (int) (index & mask) * RECORD_SIZE;
+                // copy up to the end of the ring at once
+                int chunkRecords = (int) Math.min(endIndex - index, getCapacity() - (index & mask));
+                source.limit(offset + chunkRecords * RECORD_SIZE).position(offset);
+                mapped.put(source);
+                index += chunkRecords;
+            }
+
+            mapped.putInt(aliasBytes.length);
+            for (byte[] bytes: aliasBytes) {
+                mapped.putShort((short) bytes.length);
+                mapped.put(bytes);
+            }
+            mapped.force();
+        }
+        return recordsNumber;
+    }
+
+    /**
+     * Prints a file written by {@link #dump(Path)} as text, one record per line
+     */
+    public static void print(Path file, PrintStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != FILE_MAGIC || mapped.getInt() != FILE_VERSION) {
+                throw new IOException("Not a helper strategy decisions file: " + file);
+            }
+            int recordSize = mapped.getInt();
+            int recordsNumber = mapped.getInt();
+            long aliasesOffset = mapped.getLong();
+
+            mapped.position((int) aliasesOffset);
+            String[] aliases = new String[mapped.getInt()];
+            for (int i = 0; i < aliases.length; i++) {
+                byte[] bytes = new byte[mapped.getShort()];
+                mapped.get(bytes);
+                aliases[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            for (int i = 0; i < recordsNumber; i++) {
+                int offset = FILE_HEADER_SIZE + i * recordSize;
+                int aliasHandle = mapped.getInt(offset + ALIAS_HANDLE_OFFSET);
+                String alias = aliasHandle >= 0 && aliasHandle < aliases.length ? aliases[aliasHandle] : "#" + aliasHandle;
+                long timeNs = mapped.getLong(offset + TIME_OFFSET);
+                String time = String.format("%tF %<tT.%09d", timeNs / 1_000_000, timeNs % 1_000_000_000);
+                byte action = mapped.get(offset + ACTION_OFFSET);
+                if (action == ACTION_NONE) {
+                    byte conditions = mapped.get(offset + CONDITIONS_OFFSET);
+                    out.println(String.format("%s %s evaluate bid volume %d ask volume %d, condition bid %b ask %b", time, alias,
+                            mapped.getLong(offset + VOLUME_BID_OFFSET), mapped.getLong(offset + VOLUME_ASK_OFFSET),
+                            (conditions & CONDITION_BID) != 0, (conditions & CONDITION_ASK) != 0));
+                } else {
+                    out.println(String.format("%s %s %s order #%08x at %d%s", time, alias,
+                            action == ACTION_CANCEL ? "cancel" : "move", mapped.getInt(offset + ORDER_ID_HASH_OFFSET),
+                            mapped.getInt(offset + ORDER_LEVEL_OFFSET),
+                            action == ACTION_MOVE ? " to " + mapped.getInt(offset + TARGET_LEVEL_OFFSET) : ""));
+                }
+            }
+        }
+    }
+
+    /**
+     * Usage: <code>DecisionFlightRecorder &lt;dump file&gt;</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DecisionFlightRecorder <dump file>");
+            System.exit(1);
+        }
+        print(Paths.get(args[0]), System.out);
+    }
+}
@@ -0,0 +1,25 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one evaluation of a helper strategy
+ * ({@link Layer1ApiHelperStrategyAbstract#doActionForAlias(AliasContext)})
+ */
+@Name("velox.helper.Evaluation")
+@Label("Helper Strategy Evaluation")
+@Category({"Bookmap", "Helper Strategies"})
+@Description("Evaluation of a helper strategy for one instrument")
+@StackTrace(false)
+public class HelperEvaluationEvent extends Event {
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Instrument")
+    String alias;
+}
@@ -0,0 +1,34 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a cancel or move requested by a helper strategy
+ */
+@Name("velox.helper.OrderAction")
+@Label("Helper Strategy Order Action")
+@Category({"Bookmap", "Helper Strategies"})
+@Description("Cancel or move of an order requested by a helper strategy")
+@StackTrace(false)
+public class HelperOrderActionEvent extends Event {
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Instrument")
+    String alias;
+
+    @Label("Order Id")
+    String orderId;
+
+    @Label("Action")
+    String action;
+
+    @Label("Limit Price")
+    @Description("New limit price for moves, NaN for cancels")
+    double limitPrice;
+}
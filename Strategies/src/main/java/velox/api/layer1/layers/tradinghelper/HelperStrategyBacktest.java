@@ -0,0 +1,430 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.config.beans.HelperStrategySettings;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderCancelParameters;
+import velox.api.layer1.data.OrderInfoBuilder;
+import velox.api.layer1.data.OrderMoveParameters;
+import velox.api.layer1.data.OrderStatus;
+import velox.api.layer1.data.OrderType;
+import velox.api.layer1.data.OrderUpdateParameters;
+import velox.api.layer1.data.TradeInfo;
+
+/**
+ * Replays a {@link RecordedSession} into a helper strategy as fast as
+ * possible, without Bookmap. Orders of the strategy live in a simple
+ * matching simulation: those are filled when a trade goes through their
+ * price, when their queue position is traded away or when the book crosses
+ * them, and the strategy receives the resulting order updates. Order
+ * requests take effect after {@link BacktestConfig#getOrderLatencyMs()} of
+ * data time. Request throttling of the strategy also runs on data time.
+ * Each instance runs once, in the calling thread.
+ */
+public class HelperStrategyBacktest {
+    private static class SimulatedOrder {
+        final String orderId;
+        final int instrument;
+        final boolean isBuy;
+        final int size;
+        int price;
+        int filled;
+        double filledValue;
+        /** Volume at the price of the order that has to trade before it */
+        long queueAhead;
+
+        SimulatedOrder(String orderId, int instrument, boolean isBuy, int size, int price) {
+            this.orderId = orderId;
+            this.instrument = instrument;
+            this.isBuy = isBuy;
+            this.size = size;
+            this.price = price;
+        }
+    }
+
+    private static class PendingRequest {
+        final long deliveryTimeNs;
+        final String orderId;
+        /** Move target price, NaN for cancel */
+        final double limitPrice;
+
+        PendingRequest(long deliveryTimeNs, String orderId, double limitPrice) {
+            this.deliveryTimeNs = deliveryTimeNs;
+            this.orderId = orderId;
+            this.limitPrice = limitPrice;
+        }
+    }
+
+    private static class FillCheck {
+        final long checkTimeNs;
+        final int instrument;
+        final boolean isBuy;
+        final int price;
+
+        FillCheck(long checkTimeNs, int instrument, boolean isBuy, int price) {
+            this.checkTimeNs = checkTimeNs;
+            this.instrument = instrument;
+            this.isBuy = isBuy;
+            this.price = price;
+        }
+    }
+
+    private final RecordedSession session;
+    private final Function<Layer1ApiProvider, ? extends Layer1ApiHelperStrategyAbstract<?>> strategyFactory;
+    private final HelperStrategySettings settings;
+    private final BacktestConfig config;
+
+    private final BacktestResult result = new BacktestResult();
+    private final TradeInfo bidAggressorTradeInfo = new TradeInfo(false, true, true, true);
+    private final TradeInfo askAggressorTradeInfo = new TradeInfo(false, false, true, true);
+
+    private Layer1ApiHelperStrategyAbstract<?> strategy;
+    private PrimitiveOrderBook[] books;
+    private List<List<SimulatedOrder>> instrumentOrders;
+    private final Map<String, SimulatedOrder> ordersById = new HashMap<>();
+    private int[] buyOrdersNumbers;
+    private int[] sellOrdersNumbers;
+    private long[] nextBuyPlacementTimesNs;
+    private long[] nextSellPlacementTimesNs;
+    private final ArrayDeque<PendingRequest> pendingRequests = new ArrayDeque<>();
+    private final ArrayDeque<FillCheck> fillChecks = new ArrayDeque<>();
+    private long currentTimeNs;
+    private int ordersCounter;
+    private boolean isStarted;
+
+    /**
+     * @param strategyFactory creates the strategy for given provider, e.g.
+     *        <code>Layer1ApiHelperEscapeStrategy::new</code>
+     * @param settings settings for all instruments (copied, enabled
+     *        automatically), null for defaults
+     */
+    public HelperStrategyBacktest(RecordedSession session,
+            Function<Layer1ApiProvider, ? extends Layer1ApiHelperStrategyAbstract<?>> strategyFactory,
+            HelperStrategySettings settings, BacktestConfig config) {
+        this.session = session;
+        this.strategyFactory = strategyFactory;
+        this.settings = settings;
+        this.config = new BacktestConfig(config);
+    }
+
+    public BacktestResult run() {
+        if (isStarted) {
+            throw new IllegalStateException("Backtest can only run once");
+        }
+        isStarted = true;
+
+        long startTimeNs = System.nanoTime();
+        start();
+        try {
+            int eventsNumber = session.getEventsNumber();
+            for (int event = 0; event < eventsNumber; event++) {
+                long eventTimeNs = session.getTimeNs(event);
+                deliverRequests(eventTimeNs);
+                currentTimeNs = eventTimeNs;
+                checkFills();
+                onEvent(event);
+            }
+            deliverRequests(Long.MAX_VALUE);
+            result.eventsNumber = eventsNumber;
+        } finally {
+            strategy.finish();
+        }
+        result.wallTimeNs = System.nanoTime() - startTimeNs;
+        return result;
+    }
+
+    private void start() {
+        int instrumentsNumber = session.getInstrumentsNumber();
+        books = new PrimitiveOrderBook[instrumentsNumber];
+        instrumentOrders = new ArrayList<>(instrumentsNumber);
+        for (int i = 0; i < instrumentsNumber; i++) {
+            books[i] = new PrimitiveOrderBook();
+            instrumentOrders.add(new ArrayList<>());
+        }
+        buyOrdersNumbers = new int[instrumentsNumber];
+        sellOrdersNumbers = new int[instrumentsNumber];
+        nextBuyPlacementTimesNs = new long[instrumentsNumber];
+        nextSellPlacementTimesNs = new long[instrumentsNumber];
+
+        strategy = strategyFactory.apply(StubProviders.createProvider(this::onUpdateOrder));
+        HelperStrategyOptions options = new HelperStrategyOptions();
+        options.setAsyncOrderDispatch(false);
+        options.setLatencyRecordingEnabled(false);
+        // parallel backtests of the same session must not share books or budget
+        options.setSharedMarketState(false);
+        options.setMessageBudgetPerSecond(0);
+        options.setAliasMessageBudgetPerSecond(0);
+        options.setFlightRecorderCapacity(0);
+        strategy.setOptions(options);
+        strategy.acceptSettingsInterface(StubProviders.createSettingsAccess(this::createSettings));
+        strategy.setTimeSourceMs(() -> currentTimeNs / 1_000_000);
+        strategy.setDataTimeSourceMs(() -> currentTimeNs / 1_000_000);
+        strategy.isWorking = true;
+
+        for (int i = 0; i < instrumentsNumber; i++) {
+            String alias = session.getAlias(i);
+            strategy.onInstrumentAdded(alias, new InstrumentInfo(alias, "BACKTEST", "", session.getPips(i), 1, alias, false));
+            strategy.onCbUseInstrumentSettingsClicked(alias, true);
+        }
+    }
+
+    private Object createSettings(String alias, Class<?> settingsClass) {
+        try {
+            if (settings != null && settingsClass.isInstance(settings)) {
+                return settingsClass.getConstructor(settingsClass).newInstance(settings);
+            }
+            return settingsClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can not create settings " + settingsClass, e);
+        }
+    }
+
+    private void onEvent(int event) {
+        int instrument = session.getInstrument(event);
+        String alias = session.getAlias(instrument);
+        PrimitiveOrderBook book = books[instrument];
+        int price = session.getPrice(event);
+        int size = session.getSize(event);
+
+        switch (session.getType(event)) {
+        case RecordedSession.DEPTH_BID:
+        case RecordedSession.DEPTH_ASK: {
+            boolean isBid = session.getType(event) == RecordedSession.DEPTH_BID;
+            book.onUpdate(isBid, price, size);
+            onDepthForOrders(instrument, isBid, price, size);
+            strategy.onDepth(alias, isBid, price, size);
+            break;
+        }
+        case RecordedSession.TRADE_BID_AGGRESSOR:
+            onTradeForOrders(instrument, false, price, size);
+            strategy.onTrade(alias, price, size, bidAggressorTradeInfo);
+            break;
+        case RecordedSession.TRADE_ASK_AGGRESSOR:
+            onTradeForOrders(instrument, true, price, size);
+            strategy.onTrade(alias, price, size, askAggressorTradeInfo);
+            break;
+        default:
+            throw new IllegalStateException("Unknown event type " + session.getType(event));
+        }
+
+        maintainOrders(instrument);
+    }
+
+    /**
+     * Level shrinking reduces the queue ahead of our orders, book crossing
+     * our orders fills them
+     */
+    private void onDepthForOrders(int instrument, boolean isBid, int price, int size) {
+        PrimitiveOrderBook book = books[instrument];
+        List<SimulatedOrder> orders = instrumentOrders.get(instrument);
+        // backwards, as filled orders are removed
+        for (int i = orders.size() - 1; i >= 0; i--) {
+            SimulatedOrder order = orders.get(i);
+            if (order.isBuy == isBid && order.price == price) {
+                order.queueAhead = Math.min(order.queueAhead, size);
+            }
+            if (isMarketable(book, order.isBuy, order.price)) {
+                fill(order, order.size - order.filled, order.price);
+            }
+        }
+    }
+
+    /**
+     * @param isBuyPassive true if trade hit bids
+     */
+    private void onTradeForOrders(int instrument, boolean isBuyPassive, int price, int size) {
+        List<SimulatedOrder> orders = instrumentOrders.get(instrument);
+        for (int i = orders.size() - 1; i >= 0; i--) {
+            SimulatedOrder order = orders.get(i);
+            if (order.isBuy != isBuyPassive) {
+                continue;
+            }
+            boolean isTradedThrough = order.isBuy ? price < order.price : price > order.price;
+            if (isTradedThrough) {
+                fill(order, order.size - order.filled, order.price);
+            } else if (price == order.price) {
+                order.queueAhead -= size;
+                if (order.queueAhead < 0) {
+                    int fillSize = (int) Math.min(order.size - order.filled, -order.queueAhead);
+                    order.queueAhead = 0;
+                    fill(order, fillSize, order.price);
+                }
+            }
+        }
+    }
+
+    private boolean isMarketable(PrimitiveOrderBook book, boolean isBuy, int price) {
+        if (book.isEmpty(!isBuy)) {
+            return false;
+        }
+        return isBuy ? price >= book.getBestAsk() : price <= book.getBestBid();
+    }
+
+    private void maintainOrders(int instrument) {
+        PrimitiveOrderBook book = books[instrument];
+        if (!book.hasBbo()) {
+            return;
+        }
+        int ordersPerSide = config.getOrdersPerSide();
+        if (buyOrdersNumbers[instrument] < ordersPerSide && currentTimeNs >= nextBuyPlacementTimesNs[instrument]) {
+            for (int i = buyOrdersNumbers[instrument]; i < ordersPerSide; i++) {
+                place(instrument, true, book.getBestBid() - config.getOrderDistance() - i);
+            }
+        }
+        if (sellOrdersNumbers[instrument] < ordersPerSide && currentTimeNs >= nextSellPlacementTimesNs[instrument]) {
+            for (int i = sellOrdersNumbers[instrument]; i < ordersPerSide; i++) {
+                place(instrument, false, book.getBestAsk() + config.getOrderDistance() + i);
+            }
+        }
+    }
+
+    private void place(int instrument, boolean isBuy, int price) {
+        SimulatedOrder order = new SimulatedOrder("backtest-" + ++ordersCounter, instrument, isBuy, config.getOrderSize(), price);
+        order.queueAhead = books[instrument].getSize(isBuy, price);
+        instrumentOrders.get(instrument).add(order);
+        ordersById.put(order.orderId, order);
+        if (isBuy) {
+            buyOrdersNumbers[instrument]++;
+        } else {
+            sellOrdersNumbers[instrument]++;
+        }
+        result.placedOrders++;
+        sendOrderUpdate(order, OrderStatus.WORKING);
+    }
+
+    private void fill(SimulatedOrder order, int size, int price) {
+        order.filled += size;
+        order.filledValue += (double) price * size;
+        result.fills++;
+        result.filledVolume += size;
+        fillChecks.add(new FillCheck(currentTimeNs + config.getAdverseFillHorizonMs() * 1_000_000, order.instrument, order.isBuy, price));
+
+        if (order.filled == order.size) {
+            remove(order);
+            sendOrderUpdate(order, OrderStatus.FILLED);
+        } else {
+            sendOrderUpdate(order, OrderStatus.WORKING);
+        }
+    }
+
+    private void remove(SimulatedOrder order) {
+        instrumentOrders.get(order.instrument).remove(order);
+        ordersById.remove(order.orderId);
+        long nextPlacementTimeNs = currentTimeNs + config.getOrderReplaceDelayMs() * 1_000_000;
+        if (order.isBuy) {
+            buyOrdersNumbers[order.instrument]--;
+            nextBuyPlacementTimesNs[order.instrument] = nextPlacementTimeNs;
+        } else {
+            sellOrdersNumbers[order.instrument]--;
+            nextSellPlacementTimesNs[order.instrument] = nextPlacementTimeNs;
+        }
+    }
+
+    private void sendOrderUpdate(SimulatedOrder order, OrderStatus status) {
+        double pips = session.getPips(order.instrument);
+        strategy.onOrderUpdated(new OrderInfoBuilder(session.getAlias(order.instrument), order.orderId, order.isBuy, OrderType.LMT, order.orderId, false)
+                .setStatus(status)
+                .setLimitPrice(order.price * pips)
+                .setUnfilled(status == OrderStatus.WORKING ? order.size - order.filled : 0)
+                .setFilled(order.filled)
+                .setAverageFillPrice(order.filled == 0 ? Double.NaN : order.filledValue / order.filled * pips)
+                .build());
+    }
+
+    /**
+     * Called by the strategy (from {@link #onEvent(int)} or from order
+     * updates), requests are applied later in data time
+     */
+    private void onUpdateOrder(OrderUpdateParameters parameters) {
+        long deliveryTimeNs = currentTimeNs + config.getOrderLatencyMs() * 1_000_000;
+        if (parameters instanceof OrderMoveParameters) {
+            OrderMoveParameters moveParameters = (OrderMoveParameters) parameters;
+            result.moveRequests++;
+            pendingRequests.add(new PendingRequest(deliveryTimeNs, moveParameters.orderId, moveParameters.limitPrice));
+        } else if (parameters instanceof OrderCancelParameters) {
+            result.cancelRequests++;
+            pendingRequests.add(new PendingRequest(deliveryTimeNs, ((OrderCancelParameters) parameters).orderId, Double.NaN));
+        } else {
+            result.otherRequests++;
+        }
+    }
+
+    private void deliverRequests(long timeNs) {
+        while (!pendingRequests.isEmpty() && pendingRequests.peek().deliveryTimeNs <= timeNs) {
+            PendingRequest request = pendingRequests.poll();
+            currentTimeNs = Math.max(currentTimeNs, request.deliveryTimeNs);
+            SimulatedOrder order = ordersById.get(request.orderId);
+            if (order == null) {
+                result.rejectedRequests++;
+            } else if (Double.isNaN(request.limitPrice)) {
+                remove(order);
+                sendOrderUpdate(order, OrderStatus.CANCELLED);
+            } else {
+                move(order, (int) Math.round(request.limitPrice / session.getPips(order.instrument)));
+            }
+        }
+    }
+
+    private void move(SimulatedOrder order, int price) {
+        PrimitiveOrderBook book = books[order.instrument];
+        order.price = price;
+        order.queueAhead = book.getSize(order.isBuy, price);
+        if (isMarketable(book, order.isBuy, price)) {
+            fill(order, order.size - order.filled, order.isBuy ? book.getBestAsk() : book.getBestBid());
+        } else {
+            sendOrderUpdate(order, OrderStatus.WORKING);
+        }
+    }
+
+    private void checkFills() {
+        while (!fillChecks.isEmpty() && fillChecks.peek().checkTimeNs <= currentTimeNs) {
+            FillCheck check = fillChecks.poll();
+            PrimitiveOrderBook book = books[check.instrument];
+            if (book.hasBbo()) {
+                // doubled to stay in integers
+                long doubledMid = (long) book.getBestBid() + book.getBestAsk();
+                long doubledPrice = 2L * check.price;
+                boolean isAdverse = check.isBuy ? doubledMid < doubledPrice : doubledMid > doubledPrice;
+                result.checkedFills++;
+                if (isAdverse) {
+                    result.adverseFills++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Usage: <code>HelperStrategyBacktest escape|chase|execute &lt;file recorded by FeedRecorder&gt;</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: HelperStrategyBacktest escape|chase|execute <file recorded by FeedRecorder>");
+            System.exit(1);
+        }
+        RecordedSession session = RecordedSession.readSpecificFormat(new File(args[1]));
+        HelperStrategyBacktest backtest = new HelperStrategyBacktest(session, getStrategyFactory(args[0]), null, new BacktestConfig());
+        System.out.println(backtest.run().getSummary());
+    }
+
+    public static Function<Layer1ApiProvider, ? extends Layer1ApiHelperStrategyAbstract<?>> getStrategyFactory(String strategyName) {
+        switch (strategyName.toLowerCase()) {
+        case "escape":
+            return Layer1ApiHelperEscapeStrategy::new;
+        case "chase":
+            return Layer1ApiHelperChaseStrategy::new;
+        case "execute":
+            return Layer1ApiHelperExecuteStrategy::new;
+        default:
+            throw new IllegalArgumentException("Unknown helper strategy: " + strategyName);
+        }
+    }
+}
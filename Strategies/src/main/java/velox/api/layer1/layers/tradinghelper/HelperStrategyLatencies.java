@@ -0,0 +1,57 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Latencies recorded by a helper strategy for one instrument (or summed over
+ * all instruments of the strategy)
+ */
+public class HelperStrategyLatencies {
+    private final LatencyHistogram evaluation = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram eventToOrder = new LatencyHistogram();
+
+    /**
+     * Time spent in {@link Layer1ApiHelperStrategyAbstract#doActionForAlias(AliasContext)}
+     */
+    public LatencyHistogram getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * Time an event waited for exclusive access to the instrument: for the
+     * strategy lock in default mode, in the instrument loop queue in sharded mode
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Time from arrival of the event that triggered evaluation to the
+     * {@link velox.api.layer1.Layer1ApiProvider#updateOrder(velox.api.layer1.data.OrderUpdateParameters)}
+     * call it caused
+     */
+    public LatencyHistogram getEventToOrder() {
+        return eventToOrder;
+    }
+
+    public void drainTo(HelperStrategyLatencies target) {
+        evaluation.drainTo(target.evaluation);
+        lockWait.drainTo(target.lockWait);
+        eventToOrder.drainTo(target.eventToOrder);
+    }
+
+    public void reset() {
+        evaluation.reset();
+        lockWait.reset();
+        eventToOrder.reset();
+    }
+
+    public boolean isEmpty() {
+        return evaluation.getCount() == 0 && lockWait.getCount() == 0 && eventToOrder.getCount() == 0;
+    }
+
+    public String getSummary() {
+        return "evaluation " + evaluation.getSummary()
+                + "; lock wait " + lockWait.getSummary()
+                + "; event to order " + eventToOrder.getSummary();
+    }
+}
@@ -0,0 +1,118 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.awt.Color;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.layers.strategies.interfaces.CalculatedResultListener;
+import velox.api.layer1.layers.strategies.interfaces.InvalidateInterface;
+import velox.api.layer1.layers.strategies.interfaces.OnlineCalculatable;
+import velox.api.layer1.layers.strategies.interfaces.OnlineValueCalculatorAdapter;
+import velox.api.layer1.messages.indicators.IndicatorColorScheme;
+import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator;
+import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator.GraphType;
+
+/**
+ * Bottom panel lines with event to order latency percentiles (in
+ * microseconds) of a helper strategy. Values are only known while the
+ * strategy is running, so history is empty.
+ */
+public class HelperStrategyLatencyIndicator implements OnlineCalculatable {
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p99.9"};
+    private static final Color[] COLORS = {Color.GREEN, Color.ORANGE, Color.RED};
+
+    private final Layer1ApiProvider provider;
+    private final String[] userNames = new String[PERCENTILES.length];
+
+    /** Full indicator name - percentile index */
+    private final Map<String, Integer> percentileIndexes = new ConcurrentHashMap<>();
+    /** Percentile index - (alias - listener) */
+    private final Map<Integer, Map<String, Consumer<Object>>> listeners = new ConcurrentHashMap<>();
+
+    public HelperStrategyLatencyIndicator(Layer1ApiProvider provider, String strategyName) {
+        this.provider = provider;
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            userNames[i] = strategyName + " latency " + PERCENTILE_NAMES[i];
+            listeners.put(i, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void add() {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            Layer1ApiUserMessageModifyIndicator message = getUserMessageAdd(userNames[i], COLORS[i]);
+            percentileIndexes.put(message.fullName, i);
+            provider.sendUserMessage(message);
+        }
+    }
+
+    public void remove() {
+        for (String userName: userNames) {
+            provider.sendUserMessage(new Layer1ApiUserMessageModifyIndicator(Layer1ApiHelperStrategyAbstract.class, userName, false));
+        }
+        for (Map<String, Consumer<Object>> aliasListeners: listeners.values()) {
+            aliasListeners.clear();
+        }
+    }
+
+    /**
+     * Shows percentiles of event to order latency recorded for the instrument
+     */
+    public void publish(String alias, HelperStrategyLatencies latencies) {
+        LatencyHistogram histogram = latencies.getEventToOrder();
+        boolean isEmpty = histogram.getCount() == 0;
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            Consumer<Object> listener = listeners.get(i).get(alias);
+            if (listener != null) {
+                listener.accept(isEmpty ? Double.NaN : histogram.getValueAtPercentile(PERCENTILES[i]) / 1000.);
+            }
+        }
+    }
+
+    @Override
+    public void calculateValuesInRange(String indicatorName, String indicatorAlias, long t0, long intervalWidth,
+            int intervalsNumber, CalculatedResultListener listener) {
+        for (int i = 0; i < intervalsNumber; i++) {
+            listener.provideResponse(Double.NaN);
+        }
+        listener.setCompleted();
+    }
+
+    @Override
+    public OnlineValueCalculatorAdapter createOnlineValueCalculator(String indicatorName, String indicatorAlias, long time,
+            Consumer<Object> listener, InvalidateInterface invalidateInterface) {
+        Integer percentileIndex = percentileIndexes.get(indicatorName);
+        if (percentileIndex != null) {
+            listeners.get(percentileIndex).put(indicatorAlias, listener);
+        }
+        return new OnlineValueCalculatorAdapter() {};
+    }
+
+    private Layer1ApiUserMessageModifyIndicator getUserMessageAdd(String userName, Color color) {
+        return Layer1ApiUserMessageModifyIndicator.builder(Layer1ApiHelperStrategyAbstract.class, userName)
+                .setIsAdd(true)
+                .setGraphType(GraphType.BOTTOM)
+                .setOnlineCalculatable(this)
+                .setIndicatorColorScheme(new IndicatorColorScheme() {
+                    @Override
+                    public ColorDescription[] getColors() {
+                        return new ColorDescription[] {
+                                new ColorDescription(Layer1ApiHelperStrategyAbstract.class, userName, color, false),
+                        };
+                    }
+
+                    @Override
+                    public String getColorFor(Double value) {
+                        return userName;
+                    }
+
+                    @Override
+                    public ColorIntervalResponse getColorIntervalsList(double valueFrom, double valueTo) {
+                        return new ColorIntervalResponse(new String[] {userName}, new double[] {});
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import velox.api.layer1.common.Log;
+
+/**
+ * Collects latencies recorded by instruments of a helper strategy once per
+ * second: publishes them to the {@link HelperStrategyLatencyIndicator} (if
+ * any) and periodically writes per instrument and per strategy summaries to
+ * the log.
+ */
+public class HelperStrategyLatencyReporter {
+    private final String strategyName;
+    private final Map<String, ? extends AliasContext<?>> aliasContextsMap;
+    private final int logIntervalSeconds;
+    private volatile HelperStrategyLatencyIndicator indicator;
+
+    /** Latencies of the last second, reused */
+    private final HelperStrategyLatencies tickLatencies = new HelperStrategyLatencies();
+    /** alias - latencies since last log entry */
+    private final Map<String, HelperStrategyLatencies> logLatencies = new HashMap<>();
+    private int ticksSinceLog;
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * @param logIntervalSeconds 0 to disable logging
+     */
+    public HelperStrategyLatencyReporter(String strategyName, Map<String, ? extends AliasContext<?>> aliasContextsMap,
+            int logIntervalSeconds) {
+        this.strategyName = strategyName;
+        this.aliasContextsMap = aliasContextsMap;
+        this.logIntervalSeconds = logIntervalSeconds;
+    }
+
+    /**
+     * @param indicator receives latencies from the next tick on, can be null
+     */
+    public void setIndicator(HelperStrategyLatencyIndicator indicator) {
+        this.indicator = indicator;
+    }
+
+    public synchronized void start() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, strategyName + " helper strategy latency reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(this::onTick, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the timer and logs what was not logged yet
+     */
+    public void stop() {
+        synchronized (this) {
+            if (timer == null) {
+                return;
+            }
+            timer.shutdownNow();
+            try {
+                timer.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            timer = null;
+        }
+        onTick();
+        log();
+    }
+
+    private synchronized void onTick() {
+        HelperStrategyLatencyIndicator indicator = this.indicator;
+        try {
+            for (AliasContext<?> context: aliasContextsMap.values()) {
+                String alias = context.getAlias();
+                context.getLatencies().drainTo(tickLatencies);
+                if (indicator != null) {
+                    indicator.publish(alias, tickLatencies);
+                }
+                if (logIntervalSeconds > 0) {
+                    tickLatencies.drainTo(logLatencies.computeIfAbsent(alias, a -> new HelperStrategyLatencies()));
+                } else {
+                    tickLatencies.reset();
+                }
+            }
+
+            if (logIntervalSeconds > 0 && ++ticksSinceLog >= logIntervalSeconds) {
+                log();
+            }
+        } catch (RuntimeException e) {
+            Log.error(strategyName + " helper strategy: failed to report latencies", e);
+        }
+    }
+
+    private synchronized void log() {
+        ticksSinceLog = 0;
+        HelperStrategyLatencies total = new HelperStrategyLatencies();
+        int aliasesNumber = 0;
+        for (Map.Entry<String, HelperStrategyLatencies> entry: logLatencies.entrySet()) {
+            HelperStrategyLatencies latencies = entry.getValue();
+            if (!latencies.isEmpty()) {
+                Log.info(strategyName + " helper strategy latency, " + entry.getKey() + ": " + latencies.getSummary());
+                latencies.drainTo(total);
+                aliasesNumber++;
+            }
+        }
+        if (aliasesNumber > 1) {
+            Log.info(strategyName + " helper strategy latency, all instruments: " + total.getSummary());
+        }
+        logLatencies.keySet().retainAll(aliasContextsMap.keySet());
+    }
+}
@@ -0,0 +1,232 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.config.beans.HelperEscapeStrategySettings;
+import velox.api.layer1.config.beans.HelperExecuteStrategySettings;
+import velox.api.layer1.config.beans.HelperStrategySettings;
+
+/**
+ * Runs {@link HelperStrategyBacktest} for many settings combinations in
+ * parallel and ranks them. The session is decoded once and shared read-only
+ * by all backtests, each combination gets its own strategy instance, so runs
+ * do not share any mutable state.
+ */
+public class HelperStrategyOptimizer<S extends HelperStrategySettings> {
+    /** Number of cancels and moves sent by the strategy */
+    public static final ToDoubleFunction<BacktestResult> MESSAGES_NUMBER = BacktestResult::getMessagesNumber;
+    /** Share of fills followed by adverse price move */
+    public static final ToDoubleFunction<BacktestResult> ADVERSE_FILL_RATE = BacktestResult::getAdverseFillRate;
+
+    public static class Candidate<S> {
+        private final S settings;
+        private final BacktestResult result;
+        private final double objectiveValue;
+
+        Candidate(S settings, BacktestResult result, double objectiveValue) {
+            this.settings = settings;
+            this.result = result;
+            this.objectiveValue = objectiveValue;
+        }
+
+        public S getSettings() {
+            return settings;
+        }
+
+        public BacktestResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return lower is better, NaN if objective is not defined for the run
+         */
+        public double getObjectiveValue() {
+            return objectiveValue;
+        }
+    }
+
+    /** Splits the combinations until a single one is left */
+    private class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<S> combinations;
+        private final BacktestResult[] results;
+        private final int from;
+        private final int to;
+
+        SweepTask(List<S> combinations, BacktestResult[] results, int from, int to) {
+            this.combinations = combinations;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = new HelperStrategyBacktest(session, strategyFactory, combinations.get(from), config).run();
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(combinations, results, from, middle),
+                        new SweepTask(combinations, results, middle, to));
+            }
+        }
+    }
+
+    private final RecordedSession session;
+    private final Function<Layer1ApiProvider, ? extends Layer1ApiHelperStrategyAbstract<S>> strategyFactory;
+    private final BacktestConfig config;
+
+    public HelperStrategyOptimizer(RecordedSession session,
+            Function<Layer1ApiProvider, ? extends Layer1ApiHelperStrategyAbstract<S>> strategyFactory,
+            BacktestConfig config) {
+        this.session = session;
+        this.strategyFactory = strategyFactory;
+        this.config = new BacktestConfig(config);
+    }
+
+    /**
+     * Runs one backtest per combination in the common fork-join pool
+     *
+     * @see #run(List, ToDoubleFunction, ForkJoinPool)
+     */
+    public List<Candidate<S>> run(List<S> combinations, ToDoubleFunction<BacktestResult> objective) {
+        return run(combinations, objective, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param objective value to minimize, e.g. {@link #MESSAGES_NUMBER} or
+     *        {@link #ADVERSE_FILL_RATE}
+     * @return combinations ordered from the best to the worst, those with
+     *         NaN objective go last
+     */
+    public List<Candidate<S>> run(List<S> combinations, ToDoubleFunction<BacktestResult> objective, ForkJoinPool pool) {
+        if (combinations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<S> combinationsList = new ArrayList<>(combinations);
+        BacktestResult[] results = new BacktestResult[combinationsList.size()];
+        pool.invoke(new SweepTask(combinationsList, results, 0, results.length));
+
+        List<Candidate<S>> candidates = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            candidates.add(new Candidate<>(combinationsList.get(i), results[i], objective.applyAsDouble(results[i])));
+        }
+        // Double.compare puts NaN after all other values
+        candidates.sort(Comparator.comparingDouble(Candidate::getObjectiveValue));
+        return candidates;
+    }
+
+    /**
+     * @return all combinations of given values, other fields are copied from
+     *         the template
+     */
+    public static List<HelperEscapeStrategySettings> createEscapeGrid(HelperEscapeStrategySettings template,
+            int[] percents, int[] consideredLevelsNumbers, int[] affectedLevelsNumbers, int[] moveDistances) {
+        List<HelperEscapeStrategySettings> grid = new ArrayList<>();
+        for (int percent : percents) {
+            for (int consideredLevelsNumber : consideredLevelsNumbers) {
+                for (int affectedLevelsNumber : affectedLevelsNumbers) {
+                    for (int moveDistance : moveDistances) {
+                        HelperEscapeStrategySettings settings = new HelperEscapeStrategySettings(template);
+                        settings.setPercent(percent);
+                        settings.setConsideredLevelsNumber(consideredLevelsNumber);
+                        settings.setAffectedLevelsNumber(affectedLevelsNumber);
+                        settings.setMoveDistance(moveDistance);
+                        grid.add(settings);
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @return all combinations of given values, other fields are copied from
+     *         the template
+     */
+    public static List<HelperExecuteStrategySettings> createExecuteGrid(HelperExecuteStrategySettings template,
+            int[] percents, int[] levelsNumbers, int[] tickNumbers) {
+        List<HelperExecuteStrategySettings> grid = new ArrayList<>();
+        for (int percent : percents) {
+            for (int levelsNumber : levelsNumbers) {
+                for (int tickNumber : tickNumbers) {
+                    HelperExecuteStrategySettings settings = new HelperExecuteStrategySettings(template);
+                    settings.setPercent(percent);
+                    settings.setLevelsNumber(levelsNumber);
+                    settings.setTickNumber(tickNumber);
+                    grid.add(settings);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Random search: picks up to samplesNumber distinct combinations of the grid
+     */
+    public static <S> List<S> sample(List<S> grid, int samplesNumber, Random random) {
+        List<S> shuffled = new ArrayList<>(grid);
+        Collections.shuffle(shuffled, random);
+        return new ArrayList<>(shuffled.subList(0, Math.min(samplesNumber, shuffled.size())));
+    }
+
+    /**
+     * Usage: <code>HelperStrategyOptimizer escape|execute &lt;file recorded by FeedRecorder&gt; [messages|adverse]</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: HelperStrategyOptimizer escape|execute <file recorded by FeedRecorder> [messages|adverse]");
+            System.exit(1);
+        }
+        RecordedSession session = RecordedSession.readSpecificFormat(new File(args[1]));
+        ToDoubleFunction<BacktestResult> objective = args.length == 3 && args[2].equals("adverse")
+                ? ADVERSE_FILL_RATE : MESSAGES_NUMBER;
+        int[] percents = {50, 60, 70, 80, 90};
+        int[] levelsNumbers = {1, 2, 3, 5};
+
+        switch (args[0].toLowerCase()) {
+        case "escape": {
+            List<HelperEscapeStrategySettings> grid = createEscapeGrid(new HelperEscapeStrategySettings(),
+                    percents, levelsNumbers, new int[] {1, 2}, new int[] {1, 2, 3});
+            print(new HelperStrategyOptimizer<HelperEscapeStrategySettings>(session, Layer1ApiHelperEscapeStrategy::new, new BacktestConfig())
+                    .run(grid, objective), candidate -> String.format("percent %d, considered %d, affected %d, distance %d",
+                            candidate.getPercent(), candidate.getConsideredLevelsNumber(),
+                            candidate.getAffectedLevelsNumber(), candidate.getMoveDistance()));
+            break;
+        }
+        case "execute": {
+            List<HelperExecuteStrategySettings> grid = createExecuteGrid(new HelperExecuteStrategySettings(),
+                    new int[] {100, 150, 200, 300, 400}, levelsNumbers, new int[] {1, 2, 3});
+            print(new HelperStrategyOptimizer<HelperExecuteStrategySettings>(session, Layer1ApiHelperExecuteStrategy::new, new BacktestConfig())
+                    .run(grid, objective), candidate -> String.format("percent %d, levels %d, ticks %d",
+                            candidate.getPercent(), candidate.getLevelsNumber(), candidate.getTickNumber()));
+            break;
+        }
+        default:
+            throw new IllegalArgumentException("Unknown optimizable helper strategy: " + args[0]);
+        }
+    }
+
+    private static <S> void print(List<Candidate<S>> candidates, Function<S, String> settingsFormatter) {
+        int shownNumber = Math.min(10, candidates.size());
+        for (Candidate<S> candidate : candidates.subList(0, shownNumber)) {
+            System.out.println(String.format("%.4f: %s; %s", candidate.getObjectiveValue(),
+                    settingsFormatter.apply(candidate.getSettings()), candidate.getResult().getSummary()));
+        }
+        if (candidates.size() > shownNumber) {
+            System.out.println("... " + (candidates.size() - shownNumber) + " more");
+        }
+    }
+}
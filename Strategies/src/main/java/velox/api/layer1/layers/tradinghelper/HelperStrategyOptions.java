@@ -0,0 +1,265 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Execution options of helper strategies. Unlike {@link velox.api.layer1.config.beans.HelperStrategySettings}
+ * those are not per instrument and not editable from GUI. Defaults can be
+ * overridden with system properties prefixed with {@value #PROPERTY_PREFIX}
+ * (e.g. <code>-Dvelox.strategy.helper.sharded=true</code>).
+ */
+public class HelperStrategyOptions {
+    public static final String PROPERTY_PREFIX = "velox.strategy.helper.";
+
+    private boolean isShardedMode = false;
+    private int shardedThreadsNumber = Runtime.getRuntime().availableProcessors();
+    private boolean isCoalescingEnabled = false;
+    private long coalescingIntervalMicros = 1000;
+    private boolean isAsyncOrderDispatch = true;
+    private boolean isLatencyRecordingEnabled = true;
+    private int latencyLogIntervalSeconds = 60;
+    private boolean isLatencyIndicatorEnabled = false;
+    private boolean isSharedMarketState = false;
+    private int messageBudgetPerSecond = 0;
+    private int messageBudgetBurst = 10;
+    private int aliasMessageBudgetPerSecond = 0;
+    private int aliasMessageBudgetBurst = 5;
+    private int flightRecorderCapacity = 1 << 16;
+    private boolean isFlightRecorderDumpOnFinish = false;
+    private String flightRecorderDirectory = System.getProperty("user.dir");
+
+    public HelperStrategyOptions() {
+    }
+
+    public HelperStrategyOptions(HelperStrategyOptions options) {
+        this.isShardedMode = options.isShardedMode;
+        this.shardedThreadsNumber = options.shardedThreadsNumber;
+        this.isCoalescingEnabled = options.isCoalescingEnabled;
+        this.coalescingIntervalMicros = options.coalescingIntervalMicros;
+        this.isAsyncOrderDispatch = options.isAsyncOrderDispatch;
+        this.isLatencyRecordingEnabled = options.isLatencyRecordingEnabled;
+        this.latencyLogIntervalSeconds = options.latencyLogIntervalSeconds;
+        this.isLatencyIndicatorEnabled = options.isLatencyIndicatorEnabled;
+        this.isSharedMarketState = options.isSharedMarketState;
+        this.messageBudgetPerSecond = options.messageBudgetPerSecond;
+        this.messageBudgetBurst = options.messageBudgetBurst;
+        this.aliasMessageBudgetPerSecond = options.aliasMessageBudgetPerSecond;
+        this.aliasMessageBudgetBurst = options.aliasMessageBudgetBurst;
+        this.flightRecorderCapacity = options.flightRecorderCapacity;
+        this.isFlightRecorderDumpOnFinish = options.isFlightRecorderDumpOnFinish;
+        this.flightRecorderDirectory = options.flightRecorderDirectory;
+    }
+
+    public static HelperStrategyOptions fromSystemProperties() {
+        HelperStrategyOptions options = new HelperStrategyOptions();
+        options.setShardedMode(Boolean.getBoolean(PROPERTY_PREFIX + "sharded"));
+        options.setShardedThreadsNumber(Integer.getInteger(PROPERTY_PREFIX + "shardedThreads", options.getShardedThreadsNumber()));
+        options.setCoalescingEnabled(Boolean.getBoolean(PROPERTY_PREFIX + "coalescing"));
+        options.setCoalescingIntervalMicros(Long.getLong(PROPERTY_PREFIX + "coalescingIntervalMicros", options.getCoalescingIntervalMicros()));
+        options.setAsyncOrderDispatch(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "asyncOrders", "true")));
+        options.setLatencyRecordingEnabled(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "latency", "true")));
+        options.setLatencyLogIntervalSeconds(Integer.getInteger(PROPERTY_PREFIX + "latencyLogIntervalSeconds", options.getLatencyLogIntervalSeconds()));
+        options.setLatencyIndicatorEnabled(Boolean.getBoolean(PROPERTY_PREFIX + "latencyIndicator"));
+        options.setSharedMarketState(Boolean.getBoolean(PROPERTY_PREFIX + "sharedMarketState"));
+        options.setMessageBudgetPerSecond(Integer.getInteger(PROPERTY_PREFIX + "messageBudgetPerSecond", options.getMessageBudgetPerSecond()));
+        options.setMessageBudgetBurst(Integer.getInteger(PROPERTY_PREFIX + "messageBudgetBurst", options.getMessageBudgetBurst()));
+        options.setAliasMessageBudgetPerSecond(Integer.getInteger(PROPERTY_PREFIX + "aliasMessageBudgetPerSecond", options.getAliasMessageBudgetPerSecond()));
+        options.setAliasMessageBudgetBurst(Integer.getInteger(PROPERTY_PREFIX + "aliasMessageBudgetBurst", options.getAliasMessageBudgetBurst()));
+        options.setFlightRecorderCapacity(Integer.getInteger(PROPERTY_PREFIX + "flightRecorderCapacity", options.getFlightRecorderCapacity()));
+        options.setFlightRecorderDumpOnFinish(Boolean.getBoolean(PROPERTY_PREFIX + "flightRecorderDumpOnFinish"));
+        options.setFlightRecorderDirectory(System.getProperty(PROPERTY_PREFIX + "flightRecorderDirectory", options.getFlightRecorderDirectory()));
+        return options;
+    }
+
+    /**
+     * If true, events of each instrument are processed by a single-writer
+     * {@link AliasEventLoop} instead of under the strategy-wide lock
+     */
+    public boolean isShardedMode() {
+        return isShardedMode;
+    }
+
+    public void setShardedMode(boolean isShardedMode) {
+        this.isShardedMode = isShardedMode;
+    }
+
+    /**
+     * Number of threads shared by all instrument loops in sharded mode
+     */
+    public int getShardedThreadsNumber() {
+        return shardedThreadsNumber;
+    }
+
+    public void setShardedThreadsNumber(int shardedThreadsNumber) {
+        this.shardedThreadsNumber = Math.max(1, shardedThreadsNumber);
+    }
+
+    /**
+     * If true, market data only marks an instrument as changed, and the
+     * strategy is evaluated once per burst, when the instrument loop runs out
+     * of events (and on a timer during long bursts, see
+     * {@link #getCoalescingIntervalMicros()}). Requires sharded mode: without
+     * it there is no end of a burst to evaluate at, so the option is ignored
+     * and each event is evaluated right away.
+     */
+    public boolean isCoalescingEnabled() {
+        return isCoalescingEnabled;
+    }
+
+    public void setCoalescingEnabled(boolean isCoalescingEnabled) {
+        this.isCoalescingEnabled = isCoalescingEnabled;
+    }
+
+    /**
+     * Period of the timer evaluating changed instruments in coalescing mode,
+     * bounds the delay during bursts longer than that. 0 to disable the timer.
+     */
+    public long getCoalescingIntervalMicros() {
+        return coalescingIntervalMicros;
+    }
+
+    public void setCoalescingIntervalMicros(long coalescingIntervalMicros) {
+        this.coalescingIntervalMicros = Math.max(0, coalescingIntervalMicros);
+    }
+
+    /**
+     * If true, order updates are sent by {@link OrderDispatcher} from its own
+     * thread, otherwise directly from the thread that evaluated the strategy
+     */
+    public boolean isAsyncOrderDispatch() {
+        return isAsyncOrderDispatch;
+    }
+
+    public void setAsyncOrderDispatch(boolean isAsyncOrderDispatch) {
+        this.isAsyncOrderDispatch = isAsyncOrderDispatch;
+    }
+
+    /**
+     * If true, evaluation time, lock wait time and event to order latency are
+     * recorded into {@link HelperStrategyLatencies} of each instrument
+     */
+    public boolean isLatencyRecordingEnabled() {
+        return isLatencyRecordingEnabled;
+    }
+
+    public void setLatencyRecordingEnabled(boolean isLatencyRecordingEnabled) {
+        this.isLatencyRecordingEnabled = isLatencyRecordingEnabled;
+    }
+
+    /**
+     * Period of latency summaries written to the log, 0 to disable those
+     */
+    public int getLatencyLogIntervalSeconds() {
+        return latencyLogIntervalSeconds;
+    }
+
+    public void setLatencyLogIntervalSeconds(int latencyLogIntervalSeconds) {
+        this.latencyLogIntervalSeconds = Math.max(0, latencyLogIntervalSeconds);
+    }
+
+    /**
+     * If true, event to order latency percentiles are shown in the bottom panel
+     * (see {@link HelperStrategyLatencyIndicator})
+     */
+    public boolean isLatencyIndicatorEnabled() {
+        return isLatencyIndicatorEnabled;
+    }
+
+    public void setLatencyIndicatorEnabled(boolean isLatencyIndicatorEnabled) {
+        this.isLatencyIndicatorEnabled = isLatencyIndicatorEnabled;
+    }
+
+    /**
+     * If true, book and working orders of each instrument are taken from
+     * {@link SharedMarketStateService} and maintained once for all helper
+     * strategies. Strategies evaluate on a {@link MarketSnapshot}, so those
+     * never hold the shared state while deciding or sending orders. Off by
+     * default, as it relies on all helper strategies receiving the same events in the
+     * same order (see {@link AliasMarketState}).
+     */
+    public boolean isSharedMarketState() {
+        return isSharedMarketState;
+    }
+
+    public void setSharedMarketState(boolean isSharedMarketState) {
+        this.isSharedMarketState = isSharedMarketState;
+    }
+
+    /**
+     * Cancels and moves per second allowed for all helper strategies and
+     * instruments of one account together (see {@link OrderMessageBudget}), 0 for no limit
+     */
+    public int getMessageBudgetPerSecond() {
+        return messageBudgetPerSecond;
+    }
+
+    public void setMessageBudgetPerSecond(int messageBudgetPerSecond) {
+        this.messageBudgetPerSecond = Math.max(0, messageBudgetPerSecond);
+    }
+
+    /**
+     * Messages that can be sent at once when budget was not used for a while
+     */
+    public int getMessageBudgetBurst() {
+        return messageBudgetBurst;
+    }
+
+    public void setMessageBudgetBurst(int messageBudgetBurst) {
+        this.messageBudgetBurst = Math.max(1, messageBudgetBurst);
+    }
+
+    /**
+     * Same as {@link #getMessageBudgetPerSecond()}, for each instrument
+     */
+    public int getAliasMessageBudgetPerSecond() {
+        return aliasMessageBudgetPerSecond;
+    }
+
+    public void setAliasMessageBudgetPerSecond(int aliasMessageBudgetPerSecond) {
+        this.aliasMessageBudgetPerSecond = Math.max(0, aliasMessageBudgetPerSecond);
+    }
+
+    public int getAliasMessageBudgetBurst() {
+        return aliasMessageBudgetBurst;
+    }
+
+    public void setAliasMessageBudgetBurst(int aliasMessageBudgetBurst) {
+        this.aliasMessageBudgetBurst = Math.max(1, aliasMessageBudgetBurst);
+    }
+
+    public boolean isMessageBudgetEnabled() {
+        return messageBudgetPerSecond > 0 || aliasMessageBudgetPerSecond > 0;
+    }
+
+    /**
+     * Number of latest decisions kept by {@link DecisionFlightRecorder}, 0 to
+     * disable recording, at most {@link DecisionFlightRecorder#MAX_CAPACITY}
+     */
+    public int getFlightRecorderCapacity() {
+        return flightRecorderCapacity;
+    }
+
+    public void setFlightRecorderCapacity(int flightRecorderCapacity) {
+        this.flightRecorderCapacity = Math.max(0, Math.min(DecisionFlightRecorder.MAX_CAPACITY, flightRecorderCapacity));
+    }
+
+    /**
+     * If true, recorded decisions are written to
+     * {@link #getFlightRecorderDirectory()} when the strategy is unloaded. Off
+     * by default, see {@link Layer1ApiHelperStrategyAbstract#dumpFlightRecorder()}
+     * for writing them on demand
+     */
+    public boolean isFlightRecorderDumpOnFinish() {
+        return isFlightRecorderDumpOnFinish;
+    }
+
+    public void setFlightRecorderDumpOnFinish(boolean isFlightRecorderDumpOnFinish) {
+        this.isFlightRecorderDumpOnFinish = isFlightRecorderDumpOnFinish;
+    }
+
+    public String getFlightRecorderDirectory() {
+        return flightRecorderDirectory;
+    }
+
+    public void setFlightRecorderDirectory(String flightRecorderDirectory) {
+        this.flightRecorderDirectory = flightRecorderDirectory;
+    }
+}
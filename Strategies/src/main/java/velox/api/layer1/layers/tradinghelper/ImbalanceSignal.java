@@ -0,0 +1,100 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Time-weighted exponential moving averages of top levels volumes of both
+ * book sides, and the state of imbalance conditions built on those. Volume
+ * is treated as constant between updates, so bursts of updates within a
+ * millisecond do not outweigh a book that stayed still for a second. Not
+ * thread safe, owned by one instrument.
+ */
+public class ImbalanceSignal {
+    private double averageBid;
+    private double averageAsk;
+    private long lastVolumeBid;
+    private long lastVolumeAsk;
+    private long lastTimeMs;
+    private boolean isInitialized;
+
+    private boolean isBidConditionActive;
+    private boolean isAskConditionActive;
+
+    /**
+     * @param timeMs event time, should not decrease
+     */
+    public void update(long volumeBid, long volumeAsk, long timeMs, long halfLifeMs) {
+        if (!isInitialized) {
+            averageBid = volumeBid;
+            averageAsk = volumeAsk;
+            isInitialized = true;
+        } else if (timeMs > lastTimeMs) {
+            double weight = halfLifeMs <= 0 ? 1 : 1 - Math.pow(0.5, (double) (timeMs - lastTimeMs) / halfLifeMs);
+            averageBid += weight * (lastVolumeBid - averageBid);
+            averageAsk += weight * (lastVolumeAsk - averageAsk);
+        }
+        lastVolumeBid = volumeBid;
+        lastVolumeAsk = volumeAsk;
+        lastTimeMs = Math.max(lastTimeMs, timeMs);
+    }
+
+    public boolean isInitialized() {
+        return isInitialized;
+    }
+
+    public double getAverageBid() {
+        return averageBid;
+    }
+
+    public double getAverageAsk() {
+        return averageAsk;
+    }
+
+    /**
+     * Condition "our side volume is less than percent of the opposite side".
+     * Once satisfied, it stays so until our side grows above percent
+     * increased by hysteresisPercent (e.g. 60% and 10% - until it is 66%).
+     *
+     * @param isBid our side
+     */
+    public boolean isLess(boolean isBid, double percent, double hysteresisPercent) {
+        double our = isBid ? averageBid : averageAsk;
+        double their = isBid ? averageAsk : averageBid;
+        boolean isActive = isBid ? isBidConditionActive : isAskConditionActive;
+        double threshold = percent / 100. * (isActive ? 1 + hysteresisPercent / 100. : 1);
+        return setActive(isBid, (our != 0 || their != 0) && our < their * threshold);
+    }
+
+    /**
+     * Condition "our side volume is more than percent of the opposite side".
+     * Once satisfied, it stays so until our side drops below percent
+     * decreased by hysteresisPercent.
+     *
+     * @param isBid our side
+     */
+    public boolean isMore(boolean isBid, double percent, double hysteresisPercent) {
+        double our = isBid ? averageBid : averageAsk;
+        double their = isBid ? averageAsk : averageBid;
+        boolean isActive = isBid ? isBidConditionActive : isAskConditionActive;
+        double threshold = percent / 100. * (isActive ? 1 - hysteresisPercent / 100. : 1);
+        return setActive(isBid, (our != 0 || their != 0) && our > their * threshold);
+    }
+
+    private boolean setActive(boolean isBid, boolean isActive) {
+        if (isBid) {
+            isBidConditionActive = isActive;
+        } else {
+            isAskConditionActive = isActive;
+        }
+        return isActive;
+    }
+
+    public void reset() {
+        isInitialized = false;
+        averageBid = 0;
+        averageAsk = 0;
+        lastVolumeBid = 0;
+        lastVolumeAsk = 0;
+        lastTimeMs = 0;
+        isBidConditionActive = false;
+        isAskConditionActive = false;
+    }
+}
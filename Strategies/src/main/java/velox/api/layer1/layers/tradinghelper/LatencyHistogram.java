@@ -0,0 +1,116 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets: each power
+ * of 2 is split into {@value #SUB_BUCKETS_NUMBER} equal buckets, so reported
+ * percentiles are within about 6% of the recorded values. Recording is
+ * lock-free and does not allocate, and can be done from any thread.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS_NUMBER = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_NUMBER = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS_NUMBER;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_NUMBER);
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long valueNs) {
+        if (valueNs < 0) {
+            valueNs = 0;
+        }
+        counts.incrementAndGet(getBucketIndex(valueNs));
+        long max = maxValue.get();
+        while (valueNs > max && !maxValue.compareAndSet(max, valueNs)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * @param percentile in range [0, 100]
+     * @return upper bound of the bucket holding the value at given percentile,
+     *         0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= rank) {
+                return Math.min(getBucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Moves recorded values into another histogram, leaving this one empty.
+     * Values recorded concurrently end up in exactly one of the two.
+     */
+    public void drainTo(LatencyHistogram target) {
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            if (counts.get(i) != 0) {
+                target.counts.addAndGet(i, counts.getAndSet(i, 0));
+            }
+        }
+        long max = maxValue.getAndSet(0);
+        long targetMax = target.maxValue.get();
+        while (max > targetMax && !target.maxValue.compareAndSet(targetMax, max)) {
+            targetMax = target.maxValue.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            counts.set(i, 0);
+        }
+        maxValue.set(0);
+    }
+
+    /**
+     * @return count and p50/p99/p99.9/max in microseconds
+     */
+    public String getSummary() {
+        return String.format("n=%d p50=%.1f p99=%.1f p99.9=%.1f max=%.1f us", getCount(),
+                getValueAtPercentile(50) / 1000., getValueAtPercentile(99) / 1000.,
+                getValueAtPercentile(99.9) / 1000., getMax() / 1000.);
+    }
+
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKETS_NUMBER) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS_NUMBER - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_NUMBER + subBucket;
+    }
+
+    private static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKETS_NUMBER) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS_NUMBER + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS_NUMBER;
+        long lowerBound = (long) (SUB_BUCKETS_NUMBER + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1;
+    }
+}
@@ -2,7 +2,6 @@ package velox.api.layer1.layers.tradinghelper;
 
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,10 +22,9 @@ import velox.api.layer1.config.beans.HelperChaseStrategySettings;
 import velox.api.layer1.data.InstrumentInfo;
 import velox.api.layer1.data.OrderMoveParameters;
 import velox.api.layer1.data.TradeInfo;
-import velox.api.layer1.layers.utils.OrderBook;
+import velox.api.layer1.layers.tradinghelper.WorkingOrdersIndex.OrderHandle;
 import velox.api.layer1.messages.UserMessageRewindBase;
 import velox.api.layer1.messages.indicators.SettingsAccess;
-import velox.api.layer1.providers.data.Combination;
 import velox.gui.StrategyPanel;
 
 @Layer1Attachable
@@ -36,17 +34,23 @@ import velox.gui.StrategyPanel;
 public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstract<HelperChaseStrategySettings> {
     private static final int DISTANCE_MIN = 0;
     private static final int DISTANCE_MAX = 99;
+    private static final int MIN_STEP_MIN = 1;
+    private static final int MIN_STEP_MAX = 99;
+    private static final int PACING_INTERVAL_MS_MIN = 0;
+    private static final int PACING_INTERVAL_MS_MAX = 60000;
     
     private JSpinner spinnerDistance;
     private ChangeListener spinnerDistanceListener;
+    private JSpinner spinnerMinStep;
+    private ChangeListener spinnerMinStepListener;
+    private JSpinner spinnerPacingInterval;
+    private ChangeListener spinnerPacingIntervalListener;
     
     private JRadioButton rbChaseBest;
     private JRadioButton rbChaseLast;
     
     private Map<String, HelperChaseStrategySettings> settingsMap = new HashMap<>();
     
-    private Map<String, Double> lastPriceMap = new HashMap<>();
-    
     public Layer1ApiHelperChaseStrategy(Layer1ApiProvider provider) {
         super(provider, "Chase", "velox.strategy.Chase", HelperChaseStrategySettings.class);
     }
@@ -69,10 +73,20 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
             rbChaseLast = new JRadioButton("last price");
             buttonGroup.add(rbChaseBest);
             buttonGroup.add(rbChaseLast);
+            
+            StrategyPanel pacingPanel = new StrategyPanel("Pacing");
+            pacingPanel.setLayout(new FlowLayout());
+            JLabel lbl3 = new JLabel("Move my order only when it is at least");
+            spinnerMinStep = Utils.createSpinner(settings.getMinStep(), MIN_STEP_MIN, MIN_STEP_MAX, 1);
+            JLabel lbl4 = new JLabel("levels too far, and not more often than once per");
+            spinnerPacingInterval = Utils.createSpinner(settings.getPacingIntervalMs(), PACING_INTERVAL_MS_MIN, PACING_INTERVAL_MS_MAX, 100);
+            JLabel lbl5 = new JLabel("ms");
 
             reloadGui(alias);
             
             setSpinnerOnlyNumbers(spinnerDistance);
+            setSpinnerOnlyNumbers(spinnerMinStep);
+            setSpinnerOnlyNumbers(spinnerPacingInterval);
             
             panel.add(lbl1);
             panel.add(spinnerDistance);
@@ -83,7 +97,16 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
             panel.setMinimumSize(new Dimension(panel.getMinimumSize().width, 100));
             panel.setPreferredSize(new Dimension(panel.getPreferredSize().width, 100));
             
-            lastPanels = new StrategyPanel[] {panel, getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
+            pacingPanel.add(lbl3);
+            pacingPanel.add(spinnerMinStep);
+            pacingPanel.add(lbl4);
+            pacingPanel.add(spinnerPacingInterval);
+            pacingPanel.add(lbl5);
+            
+            pacingPanel.setMinimumSize(new Dimension(pacingPanel.getMinimumSize().width, 100));
+            pacingPanel.setPreferredSize(new Dimension(pacingPanel.getPreferredSize().width, 100));
+            
+            lastPanels = new StrategyPanel[] {panel, pacingPanel, getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
             return lastPanels;
         }
     }
@@ -100,6 +123,22 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
         };
         spinnerDistance.addChangeListener(spinnerDistanceListener);
         
+        spinnerMinStep.removeChangeListener(spinnerMinStepListener);
+        spinnerMinStep.setValue(Utils.toRange(settings.getMinStep(), MIN_STEP_MIN, MIN_STEP_MAX));
+        spinnerMinStepListener = e -> {
+            settings.setMinStep((Integer) spinnerMinStep.getValue());
+            settingsChanged(alias, settings);
+        };
+        spinnerMinStep.addChangeListener(spinnerMinStepListener);
+        
+        spinnerPacingInterval.removeChangeListener(spinnerPacingIntervalListener);
+        spinnerPacingInterval.setValue(Utils.toRange(settings.getPacingIntervalMs(), PACING_INTERVAL_MS_MIN, PACING_INTERVAL_MS_MAX));
+        spinnerPacingIntervalListener = e -> {
+            settings.setPacingIntervalMs((Integer) spinnerPacingInterval.getValue());
+            settingsChanged(alias, settings);
+        };
+        spinnerPacingInterval.addChangeListener(spinnerPacingIntervalListener);
+        
         rbChaseBest.addActionListener(e -> {
             settings.setMode(HelperChaseStrategySettings.ChaseMode.BEST_PRICE);
             settingsChanged(alias, settings);
@@ -116,86 +155,100 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected int getRelevantLevelsNumber(AliasContext<HelperChaseStrategySettings> context) {
+        // both modes only depend on BBO and last trade price, sizes do not matter
+        return 0;
+    }
+    
+    @Override
+    protected void doActionForAlias(AliasContext<HelperChaseStrategySettings> context) {
+        HelperChaseStrategySettings settings = context.getSettings();
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (orderBook == null || ordersMap == null || pips == null || requestTimesMap == null) {
-                return;
+        MarketSnapshot market = context.getMarketSnapshot();
+        WorkingOrdersIndex orders = market.getOrders();
+        double pips = context.getPips();
+        RequestThrottle requestThrottle = context.getRequestThrottle();
+        OrderPacer orderPacer = context.getOrderPacer();
+        
+        int distance = settings.getDistance();
+        int minStep = Math.max(1, settings.getMinStep());
+        long pacingIntervalMs = settings.getPacingIntervalMs();
+        long nowMs = getCurrentTimeMs();
+        
+        if (market.hasBbo()) {
+            int chaseBidLevel = 0;
+            int chaseAskLevel = 0;
+            switch (settings.getMode()) {
+            case BEST_PRICE:
+                chaseBidLevel = market.getBestBid();
+                chaseAskLevel = market.getBestAsk();
+                break;
+            case LAST_PRICE:
+                if (Double.isNaN(context.getLastTradePrice())) {
+                    chaseBidLevel = market.getBestBid();
+                    chaseAskLevel = market.getBestAsk();
+                } else {
+                    chaseBidLevel = chaseAskLevel = (int) Math.round(context.getLastTradePrice());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown chase mode: " + settings.getMode());
             }
             
-            int distance = getSettingsFor(alias).getDistance();
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                int chaseBidLevel = 0;
-                int chaseAskLevel = 0;
-                switch (getSettingsFor(alias).getMode()) {
-                case BEST_PRICE:
-                    chaseBidLevel = orderBook.getBidMap().firstKey();
-                    chaseAskLevel = orderBook.getAskMap().firstKey();
-                    break;
-                case LAST_PRICE:
-                    if (!lastPriceMap.containsKey(alias)) {
-                        chaseBidLevel = orderBook.getBidMap().firstKey();
-                        chaseAskLevel = orderBook.getAskMap().firstKey();
-                    } else {
-                        chaseBidLevel = chaseAskLevel = (int) Math.round(lastPriceMap.get(alias));
-                    }
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown chase mode: " + getSettingsFor(alias).getMode());
+            PendingMoves pendingMoves = context.getPendingMoves();
+            pendingMoves.clear();
+            // bids at least minStep further than distance below chase level
+            int bidTargetLevel = chaseBidLevel - distance;
+            for (int i = 0, end = orders.lowerBound(true, bidTargetLevel - minStep + 1); i < end; i++) {
+                OrderHandle order = orders.get(true, i);
+                if (isMoveAllowed(order.getOrderId(), bidTargetLevel, nowMs, pacingIntervalMs, requestThrottle, orderPacer)) {
+                    pendingMoves.add(order.getOrderId(), bidTargetLevel);
+                }
+            }
+            // asks at least minStep further than distance above chase level
+            int askTargetLevel = chaseAskLevel + distance;
+            for (int i = orders.lowerBound(false, askTargetLevel + minStep); i < orders.size(false); i++) {
+                OrderHandle order = orders.get(false, i);
+                if (isMoveAllowed(order.getOrderId(), askTargetLevel, nowMs, pacingIntervalMs, requestThrottle, orderPacer)) {
+                    pendingMoves.add(order.getOrderId(), askTargetLevel);
                 }
-                
-                ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
-                final int chaseBid = chaseBidLevel;
-                final int chaseAsk = chaseAskLevel;
-                ordersMap.forEach((orderId, info) -> {
-                    int level = info.first;
-                    Integer targetLevel = null;
-                    if (info.second) { //bid
-                        if (chaseBid - level > distance) {
-                            targetLevel = chaseBid - distance;
-                        }
-                    } else { //ask
-                        if (level - chaseAsk > distance) {
-                            targetLevel = chaseAsk + distance;
-                        }
-                    }
-                    
-                    if (targetLevel != null) {
-                        OrderRequest orderRequest = new OrderRequest(orderId, targetLevel);
-                        Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                        
-                        if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                            pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
-                            requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                        }
-                    }
-                });
-                
-                for (Combination<String, Double> pendingMove: pendingMoves) {
-                    provider.updateOrder(new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
+            }
+            
+            for (int i = 0; i < pendingMoves.size(); i++) {
+                String orderId = pendingMoves.getOrderId(i);
+                int level = pendingMoves.getLevel(i);
+                if (!sendOrderUpdate(context, orderId, new OrderMoveParameters(orderId, Double.NaN, level * pips))) {
+                    requestThrottle.release(orderId, level);
+                } else if (pacingIntervalMs > 0) {
+                    orderPacer.onRequest(orderId, nowMs, pacingIntervalMs);
                 }
             }
+            pendingMoves.clear();
         }
     }
     
+    private boolean isMoveAllowed(String orderId, int targetLevel, long nowMs, long pacingIntervalMs,
+            RequestThrottle requestThrottle, OrderPacer orderPacer) {
+        if (pacingIntervalMs > 0 && !orderPacer.isReady(orderId, nowMs, pacingIntervalMs)) {
+            return false;
+        }
+        // pacer records the request once it is sent
+        return requestThrottle.tryAcquire(orderId, targetLevel, nowMs);
+    }
+    
     @Override
     public void onTrade(String alias, double price, int size, TradeInfo tradeInfo) {
         super.onTrade(alias, price, size, tradeInfo);
         
-        synchronized (locker) {
-            if (size > 0) {
-                lastPriceMap.put(alias, price);
-                doActionForAlias(alias);
-            }
+        if (size > 0) {
+            long eventTimeNs = getEventTimeNs();
+            runForAlias(alias, context -> {
+                context.setLastTradePrice(price);
+                onMarketDataChanged(context, eventTimeNs);
+            });
         }
     }
     
@@ -219,8 +272,8 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
     public void onUserMessage(Object data) {
         super.onUserMessage(data);
         if (data instanceof UserMessageRewindBase) {
-            synchronized (locker) {
-                lastPriceMap.clear();
+            for (AliasContext<HelperChaseStrategySettings> context: aliasContextsMap.values()) {
+                runForAlias(context, () -> context.setLastTradePrice(Double.NaN));
             }
         }
     }
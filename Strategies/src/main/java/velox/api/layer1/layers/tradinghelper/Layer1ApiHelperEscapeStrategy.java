@@ -6,8 +6,6 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
-import java.util.Map;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JLabel;
@@ -21,13 +19,11 @@ import velox.api.layer1.annotations.Layer1ApiVersionValue;
 import velox.api.layer1.annotations.Layer1Attachable;
 import velox.api.layer1.annotations.Layer1StrategyName;
 import velox.api.layer1.annotations.Layer1TradingStrategy;
-import velox.api.layer1.common.Log;
 import velox.api.layer1.config.beans.HelperEscapeStrategySettings;
 import velox.api.layer1.config.beans.HelperEscapeStrategySettings.Mode;
 import velox.api.layer1.data.OrderCancelParameters;
 import velox.api.layer1.data.OrderMoveParameters;
-import velox.api.layer1.layers.utils.OrderBook;
-import velox.api.layer1.providers.data.Combination;
+import velox.api.layer1.layers.tradinghelper.WorkingOrdersIndex.OrderHandle;
 import velox.gui.StrategyPanel;
 
 @Layer1Attachable
@@ -40,7 +36,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
     private static final int AFFECTED_LEVELS_NUMBER_MIN = 1;
     private static final int AFFECTED_LEVELS_NUMBER_MAX = 20;
     private static final int CONSIDERED_LEVELS_NUMBER_MIN = 1;
-    private static final int CONSIDERED_LEVELS_NUMBER_MAX = 20;
+    private static final int CONSIDERED_LEVELS_NUMBER_MAX = 500;
     private static final int PERCENT_MIN = 1;
     private static final int PERCENT_MAX = 400;
     
@@ -153,7 +149,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
             gbConst.fill = GridBagConstraints.HORIZONTAL;
             panel2.add(rbCancelOrder, gbConst);
             
-            lastPanels = new StrategyPanel[] {panel1, panel2, getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
+            lastPanels = new StrategyPanel[] {panel1, panel2, getSmoothingPanel(alias), getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
             return lastPanels;
         }
     }
@@ -168,7 +164,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
             settings.setMode(Mode.MOVE);
             if (Mode.MOVE != currentMode) {
                 currentMode = settings.getMode();
-                lastRequestMap.forEach((currentAlias, map) -> map.clear());
+                clearRequestTimes();
             }
             settingsChanged(alias, settings);
         };
@@ -181,7 +177,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
             settings.setMode(Mode.CANCEL);
             if (Mode.CANCEL != currentMode) {
                 currentMode = settings.getMode();
-                lastRequestMap.forEach((currentAlias, map) -> map.clear());
+                clearRequestTimes();
             }
             settingsChanged(alias, settings);
         };
@@ -230,111 +226,120 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected int getRelevantLevelsNumber(AliasContext<HelperEscapeStrategySettings> context) {
+        return context.getSettings().getConsideredLevelsNumber();
+    }
+    
+    @Override
+    protected void doActionForAlias(AliasContext<HelperEscapeStrategySettings> context) {
+        HelperEscapeStrategySettings settings = context.getSettings();
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
+        MarketSnapshot market = context.getMarketSnapshot();
+        
+        int affectedLevelsNumber = settings.getAffectedLevelsNumber();
+        int percent = settings.getPercent();
+        
+        // of getRelevantLevelsNumber() levels
+        long volumeBid = market.getTopLevelsSum(true);
+        long volumeAsk = market.getTopLevelsSum(false);
+        
+        boolean isBidConditionSatisfied;
+        boolean isAskConditionSatisfied;
+        ImbalanceSignal signal = updateImbalanceSignal(context, settings, volumeBid, volumeAsk);
+        if (signal != null) {
+            isBidConditionSatisfied = signal.isLess(true, percent, settings.getHysteresisPercent());
+            isAskConditionSatisfied = signal.isLess(false, percent, settings.getHysteresisPercent());
+        } else {
+            isBidConditionSatisfied = isConditionSatisfiedLess(volumeBid, volumeAsk, percent);
+            isAskConditionSatisfied = isConditionSatisfiedLess(volumeAsk, volumeBid, percent);
+        }
+        recordEvaluation(context, volumeBid, volumeAsk, isBidConditionSatisfied, isAskConditionSatisfied);
+        
+        if (market.hasBbo()) {
+            int firstBidLevel = market.getBestBid();
+            int firstAskLevel = market.getBestAsk();
             
-            if (orderBook == null) {
-                return;
+            if (isBidConditionSatisfied) {
+                executeAction(context, true, firstBidLevel - affectedLevelsNumber + 1, firstAskLevel);
             }
             
-            int levelsNumber = getSettingsFor(alias).getConsideredLevelsNumber();
-            int affectedLevelsNumber = getSettingsFor(alias).getAffectedLevelsNumber();
-            int percent = getSettingsFor(alias).getPercent();
-            
-            int volumeBid = getTopLevelsSum(orderBook.getBidMap(), levelsNumber, true);
-            int volumeAsk = getTopLevelsSum(orderBook.getAskMap(), levelsNumber, false);
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                int firstBidLevel = orderBook.getBidMap().firstKey();
-                int firstAskLevel = orderBook.getAskMap().firstKey();
-                
-                if (isConditionSatisfiedLess(volumeBid, volumeAsk, percent)) {
-                    executeAction(alias, true, firstBidLevel - affectedLevelsNumber + 1, firstAskLevel);
-                }
-                
-                if (isConditionSatisfiedLess(volumeAsk, volumeBid, percent)) {
-                    executeAction(alias, false, firstAskLevel + affectedLevelsNumber - 1, firstBidLevel);
-                }
+            if (isAskConditionSatisfied) {
+                executeAction(context, false, firstAskLevel + affectedLevelsNumber - 1, firstBidLevel);
             }
         }
     }
     
     /**
      * Move orders with prices in range [-inf, borderLevel] or [borderLevel, +inf] (defined by isBid) by offset in moveDirection
-     * @param alias
+     * @param context
      * @param isBid if true, execute condition for buy orders, otherwise for sell orders
      * @param borderLevel
      * @param oppositeStartLevel level where opposite trades start
      * @param offset
      * @param moveDirection
      */
-    private void executeAction(String alias, boolean isBid, final int borderLevel, final int oppositeStartLevel) {
-        synchronized (locker) {
-            ArrayList<Combination<String, Integer>> affectedOrders = new ArrayList<>();
-            
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (ordersMap == null || pips == null || requestTimesMap == null) {
-                Log.warn("Helper strategy: unknown instrument: " + alias);
-                return;
-            }
-            
-            ordersMap.forEach((orderId, info) -> {
-                int level = info.first;
-                if (info.second == isBid && isPriceInRange(level, isBid, borderLevel)) {
-                    affectedOrders.add(new Combination<String, Integer>(orderId, level));
+    private void executeAction(AliasContext<HelperEscapeStrategySettings> context, boolean isBid, final int borderLevel, final int oppositeStartLevel) {
+        WorkingOrdersIndex orders = context.getMarketSnapshot().getOrders();
+        double pips = context.getPips();
+        RequestThrottle requestThrottle = context.getRequestThrottle();
+        PendingMoves pendingMoves = context.getPendingMoves();
+        pendingMoves.clear();
+        
+        int moveDelta = context.getSettings().getMoveDistance();
+        Mode mode = context.getSettings().getMode();
+        long nowMs = getCurrentTimeMs();
+        
+        if (isBid) {
+            moveDelta *= -1;
+        }
+        
+        int begin = isBid ? orders.lowerBound(true, borderLevel) : 0;
+        int end = isBid ? orders.size(true) : orders.lowerBound(false, borderLevel + 1);
+        for (int i = begin; i < end; i++) {
+            OrderHandle order = orders.get(isBid, i);
+            switch (mode) {
+            case CANCEL: {
+                if (requestThrottle.tryAcquire(order.getOrderId(), order.getPrice(), nowMs)) {
+                    pendingMoves.add(order.getOrderId(), order.getPrice());
                 }
-            });
-            
-            int moveDelta = getSettingsFor(alias).getMoveDistance();
-            Mode mode = getSettingsFor(alias).getMode();
-            
-            if (isBid) {
-                moveDelta *= -1;
-            }
-            
-            for (Combination<String, Integer> pair: affectedOrders) {
-                switch (mode) {
-                case CANCEL: {
-                    OrderRequest orderRequest = new OrderRequest(pair.first, pair.second);
-                    Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                    
-                    if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                        provider.updateOrder(new OrderCancelParameters(pair.first));
-                        requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                    }
-                    
-                    break;
-                } case MOVE: {
-                    //avoid multiple moves, move 1 time [minLevel, maxLevel]
-                    int k = 1;
-                    while (isPriceInRange(pair.second + moveDelta * k, isBid, borderLevel) &&
-                            !isPriceinOppositeRange(pair.second + moveDelta * k, !isBid, oppositeStartLevel)) {
-                        k++;
-                    }
-                    
-                    OrderRequest orderRequest = new OrderRequest(pair.first, pair.second + k * moveDelta);
-                    Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                    
-                    if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                        provider.updateOrder(new OrderMoveParameters(pair.first, Double.NaN, (pair.second + k * moveDelta) * pips));
-                        requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                    }
-                    
-                    break;
-                } default:
-                    throw new IllegalArgumentException("Helper strategy: unknown mode: " + mode);
+                
+                break;
+            } case MOVE: {
+                //avoid multiple moves, move 1 time [minLevel, maxLevel]
+                int k = 1;
+                while (isPriceInRange(order.getPrice() + moveDelta * k, isBid, borderLevel) &&
+                        !isPriceinOppositeRange(order.getPrice() + moveDelta * k, !isBid, oppositeStartLevel)) {
+                    k++;
+                }
+                
+                if (requestThrottle.tryAcquire(order.getOrderId(), order.getPrice() + k * moveDelta, nowMs)) {
+                    pendingMoves.add(order.getOrderId(), order.getPrice() + k * moveDelta);
                 }
                 
+                break;
+            } default:
+                throw new IllegalArgumentException("Helper strategy: unknown mode: " + mode);
+            }
+        }
+        
+        // orders are sent after visiting those, as sending can update the index
+        for (int i = 0; i < pendingMoves.size(); i++) {
+            String orderId = pendingMoves.getOrderId(i);
+            int level = pendingMoves.getLevel(i);
+            boolean isSent;
+            if (mode == Mode.CANCEL) {
+                isSent = sendOrderUpdate(context, orderId, new OrderCancelParameters(orderId));
+            } else {
+                isSent = sendOrderUpdate(context, orderId, new OrderMoveParameters(orderId, Double.NaN, level * pips));
+            }
+            if (!isSent) {
+                requestThrottle.release(orderId, level);
             }
         }
+        pendingMoves.clear();
     }
 
     private boolean isPriceInRange(int price, boolean isBid, int borderLevel) {
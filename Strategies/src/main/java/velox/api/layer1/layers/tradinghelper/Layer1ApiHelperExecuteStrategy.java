@@ -2,8 +2,6 @@ package velox.api.layer1.layers.tradinghelper;
 
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.util.ArrayList;
-import java.util.Map;
 
 import javax.swing.JLabel;
 import javax.swing.JSpinner;
@@ -17,8 +15,7 @@ import velox.api.layer1.annotations.Layer1StrategyName;
 import velox.api.layer1.annotations.Layer1TradingStrategy;
 import velox.api.layer1.config.beans.HelperExecuteStrategySettings;
 import velox.api.layer1.data.OrderMoveParameters;
-import velox.api.layer1.layers.utils.OrderBook;
-import velox.api.layer1.providers.data.Combination;
+import velox.api.layer1.layers.tradinghelper.WorkingOrdersIndex.OrderHandle;
 import velox.gui.StrategyPanel;
 
 @Layer1Attachable
@@ -27,7 +24,7 @@ import velox.gui.StrategyPanel;
 @Layer1ApiVersion(Layer1ApiVersionValue.VERSION2)
 public class Layer1ApiHelperExecuteStrategy extends Layer1ApiHelperStrategyAbstract<HelperExecuteStrategySettings> {
     private static final int LEVELS_NUMBER_MIN = 1;
-    private static final int LEVELS_NUMBER_MAX = 50;
+    private static final int LEVELS_NUMBER_MAX = 500;
     private static final int TICKS_NUMBER_MIN = 1;
     private static final int TICKS_NUMBER_MAX = 20;
     private static final int PERCENT_MIN = 1;
@@ -83,7 +80,7 @@ public class Layer1ApiHelperExecuteStrategy extends Layer1ApiHelperStrategyAbstr
             panel.setMinimumSize(new Dimension(panel.getMinimumSize().width, 155));
             panel.setPreferredSize(new Dimension(panel.getPreferredSize().width, 155));
             
-            lastPanels = new StrategyPanel[] {panel, getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
+            lastPanels = new StrategyPanel[] {panel, getSmoothingPanel(alias), getSettingsPanel(alias, getSettingsFor(alias).isEnabled())};
             return lastPanels;
         }
     }
@@ -120,59 +117,70 @@ public class Layer1ApiHelperExecuteStrategy extends Layer1ApiHelperStrategyAbstr
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected int getRelevantLevelsNumber(AliasContext<HelperExecuteStrategySettings> context) {
+        return context.getSettings().getLevelsNumber();
+    }
+    
+    @Override
+    protected void doActionForAlias(AliasContext<HelperExecuteStrategySettings> context) {
+        HelperExecuteStrategySettings settings = context.getSettings();
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (orderBook == null || ordersMap == null || pips == null || requestTimesMap == null) {
-                return;
+        MarketSnapshot market = context.getMarketSnapshot();
+        WorkingOrdersIndex orders = market.getOrders();
+        double pips = context.getPips();
+        RequestThrottle requestThrottle = context.getRequestThrottle();
+        PendingMoves pendingMoves = context.getPendingMoves();
+        pendingMoves.clear();
+        
+        // of getRelevantLevelsNumber() levels
+        long volumeBid = market.getTopLevelsSum(true);
+        long volumeAsk = market.getTopLevelsSum(false);
+        int percent = settings.getPercent();
+        int distance = settings.getTickNumber();
+        
+        boolean isAskConditionSatisfied;
+        boolean isBidConditionSatisfied;
+        ImbalanceSignal signal = updateImbalanceSignal(context, settings, volumeBid, volumeAsk);
+        if (signal != null) {
+            isAskConditionSatisfied = signal.isMore(false, percent, settings.getHysteresisPercent());
+            isBidConditionSatisfied = signal.isMore(true, percent, settings.getHysteresisPercent());
+        } else {
+            isAskConditionSatisfied = isConditionSatisfiedMore(volumeAsk, volumeBid, percent);
+            isBidConditionSatisfied = isConditionSatisfiedMore(volumeBid, volumeAsk, percent);
+        }
+        recordEvaluation(context, volumeBid, volumeAsk, isBidConditionSatisfied, isAskConditionSatisfied);
+        
+        if (market.hasBbo()) {
+            long nowMs = getCurrentTimeMs();
+            if (isAskConditionSatisfied) {
+                moveOrders(false, market.getBestAsk() - distance, orders, requestThrottle, nowMs, pendingMoves);
             }
             
-            ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
-            
-            int levelsNumber = getSettingsFor(alias).getLevelsNumber();
-            
-            int volumeBid = getTopLevelsSum(orderBook.getBidMap(), levelsNumber, true);
-            int volumeAsk = getTopLevelsSum(orderBook.getAskMap(), levelsNumber, false);
-            int percent = getSettingsFor(alias).getPercent();
-            int distance = getSettingsFor(alias).getTickNumber();
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                if (isConditionSatisfiedMore(volumeAsk, volumeBid, percent)) {
-                    moveOrders(false, orderBook.getAskMap().firstKey() - distance,ordersMap, pips, requestTimesMap, levelsNumber, pendingMoves);
-                }
-                
-                if (isConditionSatisfiedMore(volumeBid, volumeAsk, percent)){
-                    moveOrders(true, orderBook.getBidMap().firstKey() + distance, ordersMap, pips, requestTimesMap, levelsNumber, pendingMoves);
-                }
+            if (isBidConditionSatisfied){
+                moveOrders(true, market.getBestBid() + distance, orders, requestThrottle, nowMs, pendingMoves);
             }
-            
-            for (Combination<String, Double> pendingMove: pendingMoves) {
-                provider.updateOrder(new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
+        }
+        
+        for (int i = 0; i < pendingMoves.size(); i++) {
+            String orderId = pendingMoves.getOrderId(i);
+            int level = pendingMoves.getLevel(i);
+            if (!sendOrderUpdate(context, orderId, new OrderMoveParameters(orderId, Double.NaN, level * pips))) {
+                requestThrottle.release(orderId, level);
             }
         }
+        pendingMoves.clear();
     }
     
-    private void moveOrders(boolean isBid, int targetLevel, Map<String, Combination<Integer, Boolean>> ordersMap,
-            double pips, Map<OrderRequest, Long> requestTimesMap,
-            int levelsNumber, ArrayList<Combination<String, Double>> pendingMoves) {
-        ordersMap.forEach((orderId, info) -> {
-            if (info.second == isBid) {
-                OrderRequest orderRequest = new OrderRequest(orderId, targetLevel);
-                Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                
-                if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                    pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
-                    requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                }
+    private void moveOrders(boolean isBid, int targetLevel, WorkingOrdersIndex orders,
+            RequestThrottle requestThrottle, long nowMs, PendingMoves pendingMoves) {
+        for (int i = 0; i < orders.size(isBid); i++) {
+            OrderHandle order = orders.get(isBid, i);
+            if (requestThrottle.tryAcquire(order.getOrderId(), targetLevel, nowMs)) {
+                pendingMoves.add(order.getOrderId(), targetLevel);
             }
-        });
+        }
     }
 }
@@ -1,19 +1,31 @@
 package velox.api.layer1.layers.tradinghelper;
 
+import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 import javax.swing.JCheckBox;
 import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
 import javax.swing.JSpinner;
 import javax.swing.text.NumberFormatter;
 
-import java.util.TreeMap;
-
 import velox.api.layer1.Layer1ApiProvider;
 import velox.api.layer1.Layer1ApiTradingAdapter;
 import velox.api.layer1.Layer1ApiAdminAdapter;
@@ -26,18 +38,22 @@ import velox.api.layer1.Layer1InternallyControllingEnable;
 import velox.api.layer1.annotations.Layer1TradingStrategy;
 import velox.api.layer1.common.ListenableHelper;
 import velox.api.layer1.common.Log;
+import velox.api.layer1.config.beans.HelperImbalanceStrategySettings;
 import velox.api.layer1.config.beans.HelperStrategySettings;
 import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderCancelParameters;
+import velox.api.layer1.data.OrderMoveParameters;
 import velox.api.layer1.data.OrderInfoUpdate;
 import velox.api.layer1.data.OrderStatus;
 import velox.api.layer1.data.OrderType;
+import velox.api.layer1.data.OrderUpdateParameters;
+import velox.api.layer1.layers.tradinghelper.WorkingOrdersIndex.OrderHandle;
 import velox.api.layer1.layers.utils.OrderBook;
 import velox.api.layer1.messages.UserMessageLayersChainCreatedTargeted;
 import velox.api.layer1.messages.UserMessageRewindBase;
 import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator;
 import velox.api.layer1.messages.indicators.SettingsAccess;
 import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator.GraphType;
-import velox.api.layer1.providers.data.Combination;
 import velox.api.layer1.settings.Layer1ConfigSettingsInterface;
 import velox.gui.StrategyPanel;
 
@@ -54,53 +70,468 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
      */
     protected static final long REQUEST_DELAY_MS = 1000;
     
+    private static final int SMOOTHING_HALF_LIFE_MS_MIN = 10;
+    private static final int SMOOTHING_HALF_LIFE_MS_MAX = 60000;
+    private static final int HYSTERESIS_PERCENT_MIN = 0;
+    private static final int HYSTERESIS_PERCENT_MAX = 90;
+    
     protected final String userReadableStrategyName;
     protected final String strategyName;
     
+    /**
+     * Guards strategy state when not in sharded mode (see {@link HelperStrategyOptions#isShardedMode()})
+     */
     protected Object locker = new Object();
     
+    /**
+     * Settings edited by GUI. Market data path only sees copies of those,
+     * published through {@link AliasContext#getSettings()} after each change.
+     * Guarded by itself rather than {@link #locker}.
+     */
     private Map<String, V> settingsMap = new HashMap<>();
     
     protected StrategyPanel[] lastPanels;
     
-    protected Map<String, OrderBook> orderBookMap = new HashMap<>(); //alias - order book
-    protected Map<String, Map<String, Combination<Integer, Boolean>>> aliasToOrdersMap = new HashMap<>(); //alias - (orderId - <price, isBid>)
-    protected Map<String, Double> pipsMap = new HashMap<>();
-    protected Map<String, Map<OrderRequest, Long>> lastRequestMap = new HashMap<>(); //alias - mapping <(order id, level number) - last time request on that level was made>
+    protected Map<String, AliasContext<V>> aliasContextsMap = new ConcurrentHashMap<>(); //alias - instrument state
+    
+    protected HelperStrategyOptions options = HelperStrategyOptions.fromSystemProperties();
+    
+    private ExecutorService eventLoopsExecutor;
+    private ScheduledExecutorService coalescingTimer;
+    private final LongAdder coalescedEvaluationsCounter = new LongAdder();
+    private final LongAdder evaluationsCounter = new LongAdder();
+    private final LongAdder irrelevantUpdatesCounter = new LongAdder();
     
     protected SettingsAccess settingsAccess;
     
     protected final Layer1ApiProvider provider;
     
+    protected final OrderDispatcher orderDispatcher;
+    
+    private volatile OrderMessageBudget messageBudget;
+    
+    private volatile DecisionFlightRecorder flightRecorder;
+    
+    private HelperStrategyLatencyReporter latencyReporter;
+    private HelperStrategyLatencyIndicator latencyIndicator;
+    
     private final Class<?> settingsClass;
     
     protected volatile boolean isWorking = false;
     
     private InvalidateIsEnabledCallback invalidateIsEnabledCallback;
     
+    /** Clock used for request throttling, replaced by data time in backtests */
+    private LongSupplier timeSourceMs = System::currentTimeMillis;
+    /** Data time clock used for signal smoothing, replaced in backtests */
+    private LongSupplier dataTimeSourceMs;
+    
     public Layer1ApiHelperStrategyAbstract(Layer1ApiProvider provider, String userReadableStrategyName, String strategyName, Class<?> settingsClass) {
         this.provider = provider;
         this.settingsClass = settingsClass;
+        dataTimeSourceMs = () -> provider.getCurrentTime() / 1_000_000;
         
         ListenableHelper.addListeners(provider, this);
         
         this.userReadableStrategyName = userReadableStrategyName;
         this.strategyName = strategyName;
+        
+        orderDispatcher = new OrderDispatcher(provider, userReadableStrategyName);
+        warnAboutIgnoredOptions();
     }
     
     protected void settingsChanged(String settingsAlias, HelperStrategySettings settingsObject) {
         synchronized (locker) {
-            V instrumentSettings = getSettingsFor(settingsAlias);
-            
             settingsAccess.setSettings(settingsAlias, strategyName, settingsObject, settingsObject.getClass());
-            
-            for (String alias: orderBookMap.keySet()) {
-                doActionForAlias(alias);
+        }
+        
+        publishSettings(settingsAlias);
+        
+        for (AliasContext<V> context: aliasContextsMap.values()) {
+            requestActionForAlias(context);
+        }
+    }
+    
+    /**
+     * Publishes a snapshot of current GUI settings of the instrument, so the
+     * market data path never sees a partially applied edit
+     */
+    private void publishSettings(String alias) {
+        AliasContext<V> context = aliasContextsMap.get(alias);
+        if (context != null) {
+            context.setSettings(copySettings(getSettingsFor(alias)));
+        }
+    }
+    
+    /**
+     * Creates a copy of settings using copy constructor of the settings class
+     */
+    @SuppressWarnings("unchecked")
+    protected V copySettings(V settings) {
+        try {
+            return (V) settingsClass.getConstructor(settingsClass).newInstance(settings);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Helper strategy: settings class has no copy constructor: " + settingsClass, e);
+        }
+    }
+    
+    /**
+     * Evaluates the strategy for one instrument. Always invoked with exclusive
+     * access to the state of that instrument: either under {@link #locker} or
+     * from the {@link AliasEventLoop} of the instrument in sharded mode. Should
+     * read the market from {@link AliasContext#getMarketSnapshot()}, the monitor
+     * of {@link AliasContext#getMarketState()} is not held. Use
+     * {@link #requestActionForAlias(AliasContext)} to trigger it from other places.
+     */
+    protected void doActionForAlias(AliasContext<V> context) {
+    }
+    
+    /**
+     * Declares how many price levels from the best price of each side the
+     * strategy depends on. Depth updates beyond that window which do not
+     * change the BBO do not trigger evaluation. 0 means that only BBO matters.
+     */
+    protected int getRelevantLevelsNumber(AliasContext<V> context) {
+        return Integer.MAX_VALUE;
+    }
+    
+    protected void requestActionForAlias(AliasContext<V> context) {
+        runForAlias(context, () -> evaluate(context, 0));
+    }
+    
+    protected void requestActionForAlias(String alias) {
+        runForAlias(alias, context -> evaluate(context, 0));
+    }
+    
+    /**
+     * Runs {@link #doActionForAlias(AliasContext)} recording its latencies
+     * and {@link HelperEvaluationEvent}
+     * 
+     * @param eventTimeNs arrival time of the event causing evaluation, 0 if none
+     */
+    private void evaluate(AliasContext<V> context, long eventTimeNs) {
+        // not allocated by JIT when the event is disabled
+        HelperEvaluationEvent event = new HelperEvaluationEvent();
+        event.begin();
+        if (!options.isLatencyRecordingEnabled()) {
+            takeMarketSnapshot(context);
+            doActionForAlias(context);
+        } else {
+            context.setEvaluationEventTimeNs(eventTimeNs);
+            long startTimeNs = System.nanoTime();
+            try {
+                takeMarketSnapshot(context);
+                doActionForAlias(context);
+            } finally {
+                context.getLatencies().getEvaluation().record(System.nanoTime() - startTimeNs);
+                context.setEvaluationEventTimeNs(0);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.strategy = strategyName;
+            event.alias = context.getAlias();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Reads what the strategy needs holding the monitor of the market state,
+     * so strategies sharing the state only wait for each other during the read
+     */
+    private void takeMarketSnapshot(AliasContext<V> context) {
+        AliasMarketState marketState = context.getMarketState();
+        synchronized (marketState) {
+            PrimitiveOrderBook orderBook = marketState.getOrderBook();
+            int levelsNumber = getRelevantLevelsNumber(context);
+            context.getMarketSnapshot().update(orderBook, marketState.getOrders(),
+                    getTopLevelsSum(orderBook, levelsNumber, true), getTopLevelsSum(orderBook, levelsNumber, false));
+        }
+    }
+    
+    /**
+     * @return time to pass to {@link #onMarketDataChanged(AliasContext, long)}
+     *         for an event arriving now, 0 if latencies are not recorded
+     */
+    protected long getEventTimeNs() {
+        return options.isLatencyRecordingEnabled() ? System.nanoTime() : 0;
+    }
+    
+    /**
+     * Sends order update without blocking on the provider (unless
+     * asynchronous dispatch is disabled in {@link HelperStrategyOptions}).
+     * Should be called from {@link #doActionForAlias(AliasContext)}.
+     * 
+     * @return false if the update was not sent as it does not fit into the
+     *         {@link OrderMessageBudget} (only with synchronous dispatch), the
+     *         strategy should then forget the request in its throttle
+     */
+    protected boolean sendOrderUpdate(AliasContext<V> context, String orderId, OrderUpdateParameters parameters) {
+        long eventTimeNs = context.getEvaluationEventTimeNs();
+        if (options.isAsyncOrderDispatch()) {
+            // dispatcher holds the request until the budget allows, it is not dropped
+            recordOrderAction(context, orderId, parameters);
+            orderDispatcher.submit(context.getAccount(), context.getAlias(), orderId, parameters, eventTimeNs,
+                    context.getLatencies().getEventToOrder());
+        } else {
+            if (messageBudget != null && !messageBudget.tryAcquire(context.getAccount(), context.getAlias(),
+                    parameters instanceof OrderCancelParameters, System.nanoTime())) {
+                // can not wait here, strategy retries on the next evaluation
+                return false;
             }
+            recordOrderAction(context, orderId, parameters);
+            if (eventTimeNs != 0) {
+                context.getLatencies().getEventToOrder().record(System.nanoTime() - eventTimeNs);
+            }
+            provider.updateOrder(parameters);
+        }
+        return true;
+    }
+    
+    private void recordOrderAction(AliasContext<V> context, String orderId, OrderUpdateParameters parameters) {
+        DecisionFlightRecorder flightRecorder = this.flightRecorder;
+        if (flightRecorder != null) {
+            recordAction(flightRecorder, context, orderId, parameters);
+        }
+        HelperOrderActionEvent event = new HelperOrderActionEvent();
+        if (event.isEnabled()) {
+            commitOrderActionEvent(event, context, orderId, parameters);
+        }
+    }
+    
+    private void commitOrderActionEvent(HelperOrderActionEvent event, AliasContext<V> context, String orderId, OrderUpdateParameters parameters) {
+        event.strategy = strategyName;
+        event.alias = context.getAlias();
+        event.orderId = orderId;
+        if (parameters instanceof OrderMoveParameters) {
+            event.action = "move";
+            event.limitPrice = ((OrderMoveParameters) parameters).limitPrice;
+        } else {
+            event.action = parameters instanceof OrderCancelParameters ? "cancel" : parameters.getClass().getSimpleName();
+            event.limitPrice = Double.NaN;
+        }
+        event.commit();
+    }
+    
+    private void recordAction(DecisionFlightRecorder flightRecorder, AliasContext<V> context, String orderId, OrderUpdateParameters parameters) {
+        WorkingOrdersIndex orders = context.getMarketSnapshot().getOrders();
+        OrderHandle order = orders == null ? null : orders.get(orderId);
+        int orderLevel = order == null ? 0 : order.getPrice();
+        if (parameters instanceof OrderCancelParameters) {
+            flightRecorder.recordAction(context.getFlightRecorderHandle(), orderId, DecisionFlightRecorder.ACTION_CANCEL, orderLevel, 0);
+        } else if (parameters instanceof OrderMoveParameters) {
+            double limitPrice = ((OrderMoveParameters) parameters).limitPrice;
+            int targetLevel = Double.isNaN(limitPrice) ? 0 : (int) Math.round(limitPrice / context.getPips());
+            flightRecorder.recordAction(context.getFlightRecorderHandle(), orderId, DecisionFlightRecorder.ACTION_MOVE, orderLevel, targetLevel);
+        }
+    }
+    
+    /**
+     * Records evaluation of the strategy condition into the flight recorder
+     * (if enabled), should be called from {@link #doActionForAlias(AliasContext)}
+     */
+    protected void recordEvaluation(AliasContext<V> context, long volumeBid, long volumeAsk,
+            boolean isBidConditionSatisfied, boolean isAskConditionSatisfied) {
+        DecisionFlightRecorder flightRecorder = this.flightRecorder;
+        if (flightRecorder != null) {
+            int conditions = (isBidConditionSatisfied ? DecisionFlightRecorder.CONDITION_BID : 0)
+                    | (isAskConditionSatisfied ? DecisionFlightRecorder.CONDITION_ASK : 0);
+            flightRecorder.recordEvaluation(context.getFlightRecorderHandle(), volumeBid, volumeAsk, conditions);
+        }
+    }
+    
+    /**
+     * Writes decisions kept by the flight recorder to
+     * {@link HelperStrategyOptions#getFlightRecorderDirectory()}
+     * 
+     * @return written file, null if there is nothing to write
+     */
+    public Path dumpFlightRecorder() throws IOException {
+        DecisionFlightRecorder flightRecorder = this.flightRecorder;
+        if (flightRecorder == null || flightRecorder.getRecordsNumber() == 0) {
+            return null;
+        }
+        Path file = Paths.get(options.getFlightRecorderDirectory(),
+                userReadableStrategyName + "_helper_decisions-" + System.currentTimeMillis() + ".bin");
+        flightRecorder.dump(file);
+        return file;
+    }
+    
+    /**
+     * Forgets all previously made requests, so those can be repeated without waiting for {@link #REQUEST_DELAY_MS}
+     */
+    protected void clearRequestTimes() {
+        for (AliasContext<V> context: aliasContextsMap.values()) {
+            runForAlias(context, () -> {
+                context.getRequestThrottle().clear();
+                context.getOrderPacer().clear();
+            });
+        }
+    }
+    
+    /**
+     * Should be called on market data for an instrument (with exclusive access
+     * to its state). Evaluates the strategy right away, or in coalescing mode
+     * defers evaluation to the end of the burst.
+     * 
+     * @param eventTimeNs arrival time of the event (see {@link #getEventTimeNs()})
+     */
+    protected void onMarketDataChanged(AliasContext<V> context, long eventTimeNs) {
+        if (isCoalescing()) {
+            if (context.isDirty()) {
+                coalescedEvaluationsCounter.increment();
+            } else {
+                context.setPendingEventTimeNs(eventTimeNs);
+                context.setDirty(true);
+            }
+        } else {
+            evaluationsCounter.increment();
+            evaluate(context, eventTimeNs);
+        }
+    }
+    
+    private void evaluateIfDirty(AliasContext<V> context) {
+        if (context.isDirty()) {
+            context.setDirty(false);
+            evaluationsCounter.increment();
+            evaluate(context, context.getPendingEventTimeNs());
+        }
+    }
+    
+    private void evaluateDirtyAliases() {
+        for (AliasContext<V> context: aliasContextsMap.values()) {
+            if (context.isDirty()) {
+                runForAlias(context, () -> evaluateIfDirty(context));
+            }
+        }
+    }
+    
+    /**
+     * @return number of evaluations skipped because of coalescing
+     */
+    public long getCoalescedEvaluationsNumber() {
+        return coalescedEvaluationsCounter.sum();
+    }
+    
+    /**
+     * @return number of depth updates that did not cause evaluation because
+     *         those were outside of {@link #getRelevantLevelsNumber(AliasContext)}
+     */
+    public long getIrrelevantUpdatesNumber() {
+        return irrelevantUpdatesCounter.sum();
+    }
+    
+    /**
+     * @return number of evaluations caused by market data
+     */
+    public long getMarketDataEvaluationsNumber() {
+        return evaluationsCounter.sum();
+    }
+    
+    /**
+     * Runs task with exclusive access to the state of given instrument
+     */
+    protected void runForAlias(AliasContext<V> context, Runnable task) {
+        long submitTimeNs = getEventTimeNs();
+        if (context.getEventLoop() != null) {
+            if (submitTimeNs == 0) {
+                context.getEventLoop().execute(task);
+            } else {
+                context.getEventLoop().execute(() -> {
+                    recordLockWait(context, submitTimeNs);
+                    task.run();
+                });
+            }
+        } else {
+            synchronized (locker) {
+                recordLockWait(context, submitTimeNs);
+                task.run();
+            }
+        }
+    }
+    
+    private void recordLockWait(AliasContext<V> context, long submitTimeNs) {
+        if (submitTimeNs != 0) {
+            context.getLatencies().getLockWait().record(System.nanoTime() - submitTimeNs);
+        }
+    }
+    
+    protected void runForAlias(String alias, Consumer<AliasContext<V>> task) {
+        AliasContext<V> context = aliasContextsMap.get(alias);
+        if (context != null) {
+            runForAlias(context, () -> task.accept(context));
+        } else {
+            Log.warn("Helper strategy: unknown instrument " + alias);
+        }
+    }
+    
+    /**
+     * @return current time in milliseconds, to be used for request throttling
+     */
+    protected long getCurrentTimeMs() {
+        return timeSourceMs.getAsLong();
+    }
+    
+    void setTimeSourceMs(LongSupplier timeSourceMs) {
+        this.timeSourceMs = timeSourceMs;
+    }
+    
+    /**
+     * @return current data time in milliseconds, to be used for signal
+     *         smoothing, so that replay behaves the same as realtime
+     */
+    protected long getDataTimeMs() {
+        return dataTimeSourceMs.getAsLong();
+    }
+    
+    void setDataTimeSourceMs(LongSupplier dataTimeSourceMs) {
+        this.dataTimeSourceMs = dataTimeSourceMs;
+    }
+    
+    /**
+     * Should be called before the strategy receives any instrument
+     */
+    public void setOptions(HelperStrategyOptions options) {
+        this.options = new HelperStrategyOptions(options);
+        warnAboutIgnoredOptions();
+    }
+    
+    private void warnAboutIgnoredOptions() {
+        if (options.isCoalescingEnabled() && !options.isShardedMode()) {
+            Log.warn(userReadableStrategyName + " helper strategy: coalescing requires sharded mode, evaluating each event instead");
         }
     }
     
-    protected void doActionForAlias(String alias) {
+    /**
+     * Coalescing needs the end of a burst, which only the instrument loop of
+     * sharded mode knows. A timer alone would delay every burst by up to its period.
+     */
+    private boolean isCoalescing() {
+        return options.isCoalescingEnabled() && options.isShardedMode();
+    }
+    
+    private synchronized ExecutorService getEventLoopsExecutor() {
+        if (eventLoopsExecutor == null) {
+            AtomicInteger threadsCounter = new AtomicInteger();
+            eventLoopsExecutor = Executors.newFixedThreadPool(options.getShardedThreadsNumber(), runnable -> {
+                Thread thread = new Thread(runnable, userReadableStrategyName + " helper strategy loop " + threadsCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return eventLoopsExecutor;
+    }
+    
+    private synchronized void startCoalescingTimerIfNeeded() {
+        if (coalescingTimer == null && isCoalescing() && options.getCoalescingIntervalMicros() > 0) {
+            coalescingTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, userReadableStrategyName + " helper strategy coalescing timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMicros = options.getCoalescingIntervalMicros();
+            coalescingTimer.scheduleAtFixedRate(this::evaluateDirtyAliases, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        }
     }
     
     @Override
@@ -108,97 +539,292 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         return new StrategyPanel[0];
     }
 
+    private synchronized void startLatencyReporterIfNeeded() {
+        if (latencyReporter == null && options.isLatencyRecordingEnabled()
+                && (options.getLatencyLogIntervalSeconds() > 0 || options.isLatencyIndicatorEnabled())) {
+            latencyReporter = new HelperStrategyLatencyReporter(userReadableStrategyName, aliasContextsMap,
+                    options.getLatencyLogIntervalSeconds());
+            latencyReporter.setIndicator(latencyIndicator);
+            latencyReporter.start();
+        }
+    }
+    
     @Override
     public void finish() {
         isWorking = false;
         onUserMessage(new Layer1ApiUserMessageModifyIndicator(Layer1ApiHelperStrategyAbstract.class, userReadableStrategyName, false));
+        synchronized (this) {
+            if (latencyReporter != null) {
+                latencyReporter.stop();
+                latencyReporter = null;
+            }
+            if (latencyIndicator != null) {
+                latencyIndicator.remove();
+                latencyIndicator = null;
+            }
+        }
         synchronized (locker) {
-            orderBookMap.clear();
-            aliasToOrdersMap.clear();
-            lastRequestMap.clear();
+            for (AliasContext<V> context: aliasContextsMap.values()) {
+                releaseMarketState(context);
+            }
+            aliasContextsMap.clear();
+        }
+        if (options.isAsyncOrderDispatch()) {
+            orderDispatcher.stop();
+            if (orderDispatcher.getSubmittedNumber() != 0) {
+                Log.info(userReadableStrategyName + " helper strategy orders: " + orderDispatcher.getStatistics());
+            }
+        }
+        if (messageBudget != null) {
+            Log.info(userReadableStrategyName + " helper strategy order message budget: " + messageBudget.getStatistics());
+            orderDispatcher.setBudget(null);
+            OrderMessageBudget.releaseShared(messageBudget);
+            messageBudget = null;
+        }
+        if (options.isFlightRecorderDumpOnFinish()) {
+            try {
+                Path file = dumpFlightRecorder();
+                if (file != null) {
+                    Log.info(userReadableStrategyName + " helper strategy decisions written to " + file);
+                }
+            } catch (IOException e) {
+                Log.error(userReadableStrategyName + " helper strategy: failed to write decisions", e);
+            }
+        }
+        synchronized (this) {
+            if (eventLoopsExecutor != null) {
+                eventLoopsExecutor.shutdownNow();
+                eventLoopsExecutor = null;
+            }
+            if (coalescingTimer != null) {
+                coalescingTimer.shutdownNow();
+                coalescingTimer = null;
+            }
+        }
+        long evaluations = evaluationsCounter.sum();
+        long coalescedEvaluations = coalescedEvaluationsCounter.sum();
+        long irrelevantUpdates = irrelevantUpdatesCounter.sum();
+        if (coalescedEvaluations != 0 || irrelevantUpdates != 0) {
+            Log.info(userReadableStrategyName + " helper strategy: " + evaluations + " evaluations on market data, "
+                    + coalescedEvaluations + " saved by coalescing, "
+                    + irrelevantUpdates + " skipped as far from the market");
         }
     }
     
     @Override
     public void onInstrumentAdded(String alias, InstrumentInfo instrumentInfo) {
-        synchronized (locker) {
-            aliasToOrdersMap.put(alias, new HashMap<>());
-            orderBookMap.put(alias, new OrderBook());
-            pipsMap.put(alias, instrumentInfo.pips);
-            lastRequestMap.put(alias, new TreeMap<>());
+        V settings = copySettings(getSettingsFor(alias));
+        AliasEventLoop eventLoop = null;
+        if (options.isShardedMode()) {
+            eventLoop = new AliasEventLoop(alias, getEventLoopsExecutor(), isCoalescing() ? () -> onBatchEnd(alias) : null);
+        }
+        AliasMarketState marketState;
+        if (isMarketStateShared()) {
+            marketState = SharedMarketStateService.acquire(alias, this);
+        } else {
+            marketState = new AliasMarketState(alias);
+            marketState.addSubscriber(this);
+        }
+        AliasContext<V> context = new AliasContext<>(alias, instrumentInfo.pips, settings, eventLoop, marketState, isMarketStateShared());
+        context.setAccount(getAccount(alias));
+        DecisionFlightRecorder flightRecorder = getFlightRecorder();
+        if (flightRecorder != null) {
+            context.setFlightRecorderHandle(flightRecorder.registerAlias(alias));
+        }
+        AliasContext<V> previousContext = aliasContextsMap.put(alias, context);
+        if (previousContext != null) {
+            releaseMarketState(previousContext);
+        }
+        startCoalescingTimerIfNeeded();
+        startLatencyReporterIfNeeded();
+        if (messageBudget == null) {
+            messageBudget = OrderMessageBudget.acquireShared(options);
+            orderDispatcher.setBudget(messageBudget);
+        }
+        if (options.isAsyncOrderDispatch()) {
+            orderDispatcher.start();
+        }
+    }
+    
+    /**
+     * @return account whose {@link OrderMessageBudget} limit applies to orders
+     *         of the instrument. The API does not tell the account of an order,
+     *         so by default it is the trading connection of the strategy.
+     */
+    protected String getAccount(String alias) {
+        return provider.getSource();
+    }
+    
+    private synchronized DecisionFlightRecorder getFlightRecorder() {
+        if (flightRecorder == null && options.getFlightRecorderCapacity() > 0) {
+            flightRecorder = new DecisionFlightRecorder(options.getFlightRecorderCapacity());
+        }
+        return flightRecorder;
+    }
+    
+    private boolean isMarketStateShared() {
+        return options.isSharedMarketState();
+    }
+    
+    private void releaseMarketState(AliasContext<V> context) {
+        if (isMarketStateShared()) {
+            SharedMarketStateService.release(context.getMarketState(), this);
+        }
+    }
+    
+    private void onBatchEnd(String alias) {
+        AliasContext<V> context = aliasContextsMap.get(alias);
+        if (context != null) {
+            evaluateIfDirty(context);
         }
     }
     
     @Override
     public void onInstrumentRemoved(String alias) {
-        synchronized (locker) {
-            orderBookMap.remove(alias);
-            lastRequestMap.remove(alias);
-        }
+        runForAlias(alias, context -> {
+            if (aliasContextsMap.remove(alias, context)) {
+                releaseMarketState(context);
+            }
+        });
     }
     
     @Override
     public void onDepth(String alias, boolean isBid, int price, int size) {
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            if (orderBook != null) {
-                orderBook.onUpdate(isBid, price, size);
-                doActionForAlias(alias);
-            } else {
-                Log.warn("Helper strategy: unknown instrument " + alias);
+        long eventTimeNs = getEventTimeNs();
+        AliasContext<V> context = aliasContextsMap.get(alias);
+        if (context == null) {
+            Log.warn("Helper strategy: unknown instrument " + alias);
+            return;
+        }
+        // numbered on arrival, so in sharded mode too it matches other strategies
+        long sequence = context.nextEventSequence();
+        if (context.getEventLoop() != null) {
+            context.getEventLoop().execute(() -> {
+                recordLockWait(context, eventTimeNs);
+                onDepthForAlias(context, sequence, isBid, price, size, eventTimeNs);
+            });
+        } else {
+            // not using runForAlias here to keep the default path allocation-free
+            synchronized (locker) {
+                recordLockWait(context, eventTimeNs);
+                onDepthForAlias(context, sequence, isBid, price, size, eventTimeNs);
             }
         }
     }
     
+    /**
+     * When the market state is shared, the event is applied by the strategy
+     * that gets it first, the others find it applied. Either way the strategy
+     * evaluates on the state including the event.
+     */
+    private void onDepthForAlias(AliasContext<V> context, long sequence, boolean isBid, int price, int size, long eventTimeNs) {
+        AliasMarketState marketState = context.getMarketState();
+        boolean isRelevant;
+        synchronized (marketState) {
+            if (marketState.tryApply(sequence)) {
+                marketState.onDepth(isBid, price, size);
+            }
+            
+            long bboVersion = marketState.getBboVersion();
+            boolean isBboChanged = bboVersion != context.getSeenBboVersion();
+            context.setSeenBboVersion(bboVersion);
+            isRelevant = isBboChanged || isInRelevantWindow(context, isBid, price);
+        }
+        if (isRelevant) {
+            onMarketDataChanged(context, eventTimeNs);
+        } else {
+            irrelevantUpdatesCounter.increment();
+        }
+    }
+    
+    private boolean isInRelevantWindow(AliasContext<V> context, boolean isBid, int price) {
+        PrimitiveOrderBook orderBook = context.getOrderBook();
+        if (orderBook.isEmpty(isBid)) {
+            return true;
+        }
+        int distance = isBid ? orderBook.getBestBid() - price : price - orderBook.getBestAsk();
+        return distance < getRelevantLevelsNumber(context);
+    }
+    
     @Override
     public void onUserMessage(Object data) {
         if (data instanceof UserMessageLayersChainCreatedTargeted) {
             UserMessageLayersChainCreatedTargeted message = (UserMessageLayersChainCreatedTargeted) data;
             if (message.targetClass == getClass()) {
                 isWorking = true;
+                if (options.isLatencyIndicatorEnabled()) {
+                    addLatencyIndicator();
+                }
                 onUserMessage(new Layer1ApiUserMessageModifyIndicator(Layer1ApiHelperStrategyAbstract.class, userReadableStrategyName, true,
                         null, null, null, null, null, null, null, null, null, null, GraphType.NONE, false, null, null, null, null));
             }
         } else if (data instanceof UserMessageRewindBase) {
             UserMessageRewindBase message = (UserMessageRewindBase) data;
             
-            synchronized (locker) {
-                for (Entry<String, OrderBook> entry: message.aliasToOrderBooksMap.entrySet()) {
-                    OrderBook orderBook = orderBookMap.get(entry.getKey());
-                    
-                    if (orderBook != null) {
-                        orderBookMap.put(entry.getKey(), new OrderBook(entry.getValue()));
+            for (AliasContext<V> context: aliasContextsMap.values()) {
+                OrderBook orderBook = message.aliasToOrderBooksMap.get(context.getAlias());
+                long sequence = context.nextEventSequence();
+                runForAlias(context, () -> {
+                    context.getImbalanceSignal().reset();
+                    // orders are forgotten below, so are their requests
+                    context.getRequestThrottle().clear();
+                    context.getOrderPacer().clear();
+                    AliasMarketState marketState = context.getMarketState();
+                    synchronized (marketState) {
+                        if (marketState.tryApply(sequence)) {
+                            if (orderBook != null) {
+                                marketState.getOrderBook().resetTo(orderBook);
+                            }
+                            marketState.getOrders().clear();
+                        }
                     }
-                }
-                
-                aliasToOrdersMap.forEach((alias, orderMap) -> orderMap.clear());
+                });
+            }
+        }
+    }
+
+    private synchronized void addLatencyIndicator() {
+        if (latencyIndicator == null) {
+            latencyIndicator = new HelperStrategyLatencyIndicator(provider, userReadableStrategyName);
+            latencyIndicator.add();
+            if (latencyReporter != null) {
+                latencyReporter.setIndicator(latencyIndicator);
             }
         }
     }
 
     @Override
     public void onOrderUpdated(OrderInfoUpdate orderInfoUpdate) {
-        synchronized (locker) {
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(orderInfoUpdate.instrumentAlias);
-            if (ordersMap == null) {
-                ordersMap = new HashMap<>();
-                aliasToOrdersMap.put(orderInfoUpdate.instrumentAlias, ordersMap);
-            }
-            if (orderInfoUpdate.type == OrderType.LMT) {
-                if (orderInfoUpdate.unfilled == 0 || !(orderInfoUpdate.status == OrderStatus.WORKING)) {
-                    ordersMap.remove(orderInfoUpdate.orderId);
-                } else {
-                    Double pips = pipsMap.get(orderInfoUpdate.instrumentAlias);
-                    if (pips == null) {
-                        Log.warn("Helper strategy: unknown instrument: " + orderInfoUpdate.instrumentAlias);
-                    } else {
-                        ordersMap.put(orderInfoUpdate.orderId, new Combination<Integer, Boolean>((int) Math.round(orderInfoUpdate.limitPrice / pips), orderInfoUpdate.isBuy));
+        long eventTimeNs = getEventTimeNs();
+        AliasContext<V> context = aliasContextsMap.get(orderInfoUpdate.instrumentAlias);
+        if (context == null) {
+            Log.warn("Helper strategy: unknown instrument " + orderInfoUpdate.instrumentAlias);
+            return;
+        }
+        boolean isLimitOrder = orderInfoUpdate.type == OrderType.LMT;
+        long sequence = isLimitOrder ? context.nextEventSequence() : 0;
+        runForAlias(context, () -> {
+            if (isLimitOrder) {
+                boolean isOrderDone = orderInfoUpdate.unfilled == 0 || !(orderInfoUpdate.status == OrderStatus.WORKING);
+                if (isOrderDone) {
+                    context.getRequestThrottle().removeOrder(orderInfoUpdate.orderId);
+                    context.getOrderPacer().removeOrder(orderInfoUpdate.orderId);
+                }
+                AliasMarketState marketState = context.getMarketState();
+                synchronized (marketState) {
+                    if (marketState.tryApply(sequence)) {
+                        WorkingOrdersIndex orders = marketState.getOrders();
+                        if (isOrderDone) {
+                            orders.remove(orderInfoUpdate.orderId);
+                        } else {
+                            orders.update(orderInfoUpdate.orderId, (int) Math.round(orderInfoUpdate.limitPrice / context.getPips()), orderInfoUpdate.isBuy);
+                        }
                     }
                 }
             }
             
-            doActionForAlias(orderInfoUpdate.instrumentAlias);
-        }
+            evaluate(context, eventTimeNs);
+        });
     }
     
     protected void setSpinnerOnlyNumbers(JSpinner spinner) {
@@ -206,23 +832,11 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         ((NumberFormatter) tfield.getFormatter()).setAllowsInvalid(false);
     }
     
-    protected int getTopLevelsSum(TreeMap<Integer, Long> map, int levelsNumber, boolean isBid) {
-        if (map.isEmpty()) {
-            return 0;
-        }
-        
-        int result = 0;
-        
-        int topPrice = map.firstKey();
-        for (int i = 0; i < levelsNumber; i++) {
-            int price = topPrice + i * (isBid ? -1 : 1);
-            result += map.getOrDefault(price, 0L);
-        }
-                
-        return result;
+    protected long getTopLevelsSum(PrimitiveOrderBook orderBook, int levelsNumber, boolean isBid) {
+        return orderBook.getTopLevelsSum(isBid, levelsNumber);
     }
     
-    protected boolean isConditionSatisfiedLess(int volumeOur, int volumeTheir, double percent) {
+    protected boolean isConditionSatisfiedLess(long volumeOur, long volumeTheir, double percent) {
         if (volumeOur == 0 && volumeTheir == 0) {
             return false;
         }
@@ -232,7 +846,7 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         return volumeOur < ((double) volumeTheir) * percent;
     }
     
-    protected boolean isConditionSatisfiedMore(int volumeOur, int volumeTheir, double percent) {
+    protected boolean isConditionSatisfiedMore(long volumeOur, long volumeTheir, double percent) {
         if (volumeOur == 0 && volumeTheir == 0) {
             return false;
         }
@@ -242,6 +856,73 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         return volumeOur > ((double) volumeTheir) * percent;
     }
     
+    /**
+     * Feeds top levels volumes into the smoothed imbalance signal of the
+     * instrument if smoothing is enabled, otherwise drops the signal state
+     * 
+     * @return signal to evaluate conditions on, null if current volumes should be used
+     */
+    protected ImbalanceSignal updateImbalanceSignal(AliasContext<V> context, HelperImbalanceStrategySettings settings,
+            long volumeBid, long volumeAsk) {
+        ImbalanceSignal signal = context.getImbalanceSignal();
+        if (!settings.isSmoothingEnabled()) {
+            if (signal.isInitialized()) {
+                signal.reset();
+            }
+            return null;
+        }
+        signal.update(volumeBid, volumeAsk, getDataTimeMs(), settings.getSmoothingHalfLifeMs());
+        return signal;
+    }
+    
+    protected StrategyPanel getSmoothingPanel(String alias) {
+        HelperImbalanceStrategySettings settings = (HelperImbalanceStrategySettings) getSettingsFor(alias);
+        
+        StrategyPanel panel = new StrategyPanel("Signal smoothing");
+        panel.setLayout(new FlowLayout());
+        
+        JCheckBox cbSmoothing = new JCheckBox("Use volumes averaged over");
+        JSpinner spinnerHalfLife = Utils.createSpinner(settings.getSmoothingHalfLifeMs(), SMOOTHING_HALF_LIFE_MS_MIN, SMOOTHING_HALF_LIFE_MS_MAX, 50);
+        JLabel lbl1 = new JLabel("ms (half-life), keep acting until imbalance weakens by");
+        JSpinner spinnerHysteresis = Utils.createSpinner(settings.getHysteresisPercent(), HYSTERESIS_PERCENT_MIN, HYSTERESIS_PERCENT_MAX, 1);
+        JLabel lbl2 = new JLabel("%");
+        
+        cbSmoothing.setSelected(settings.isSmoothingEnabled());
+        spinnerHalfLife.setEnabled(settings.isSmoothingEnabled());
+        spinnerHysteresis.setEnabled(settings.isSmoothingEnabled());
+        setSpinnerOnlyNumbers(spinnerHalfLife);
+        setSpinnerOnlyNumbers(spinnerHysteresis);
+        
+        cbSmoothing.addActionListener(e -> {
+            HelperImbalanceStrategySettings currentSettings = (HelperImbalanceStrategySettings) getSettingsFor(alias);
+            currentSettings.setSmoothingEnabled(cbSmoothing.isSelected());
+            spinnerHalfLife.setEnabled(cbSmoothing.isSelected());
+            spinnerHysteresis.setEnabled(cbSmoothing.isSelected());
+            settingsChanged(alias, currentSettings);
+        });
+        spinnerHalfLife.addChangeListener(e -> {
+            HelperImbalanceStrategySettings currentSettings = (HelperImbalanceStrategySettings) getSettingsFor(alias);
+            currentSettings.setSmoothingHalfLifeMs((Integer) spinnerHalfLife.getValue());
+            settingsChanged(alias, currentSettings);
+        });
+        spinnerHysteresis.addChangeListener(e -> {
+            HelperImbalanceStrategySettings currentSettings = (HelperImbalanceStrategySettings) getSettingsFor(alias);
+            currentSettings.setHysteresisPercent((Integer) spinnerHysteresis.getValue());
+            settingsChanged(alias, currentSettings);
+        });
+        
+        panel.add(cbSmoothing);
+        panel.add(spinnerHalfLife);
+        panel.add(lbl1);
+        panel.add(spinnerHysteresis);
+        panel.add(lbl2);
+        
+        panel.setMinimumSize(new Dimension(panel.getMinimumSize().width, 90));
+        panel.setPreferredSize(new Dimension(panel.getPreferredSize().width, 90));
+        
+        return panel;
+    }
+    
     protected StrategyPanel getSettingsPanel(String alias, boolean isSelected) {
         StrategyPanel panel = new StrategyPanel("Enable");
         
@@ -266,8 +947,9 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         V settings = getSettingsFor(alias);
         settings.setEnabled(isSelected);
         settingsAccess.setSettings(alias, strategyName, settings, settingsClass);
+        publishSettings(alias);
         
-        doActionForAlias(alias);
+        requestActionForAlias(alias);
         
         if (invalidateIsEnabledCallback != null) {
             invalidateIsEnabledCallback.invalidate();
@@ -290,9 +972,13 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         this.settingsAccess = settingsAccess;
     }
     
+    /**
+     * @return settings object edited by GUI. Strategy logic should use
+     *         {@link AliasContext#getSettings()} instead.
+     */
     @SuppressWarnings("unchecked")
     protected V getSettingsFor(String alias) {
-        synchronized (locker) {
+        synchronized (settingsMap) {
             V settings = settingsMap.get(alias);
             if (settings == null) {
                 settings = (V) settingsAccess.getSettings(alias, strategyName, settingsClass);
@@ -304,7 +990,8 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
 
     @Override
     public boolean isEnabledFor(String alias) {
-        HelperStrategySettings settings = getSettingsFor(alias);
+        AliasContext<V> context = aliasContextsMap.get(alias);
+        HelperStrategySettings settings = context != null ? context.getSettings() : getSettingsFor(alias);
         
         return settings.isEnabled();
     }
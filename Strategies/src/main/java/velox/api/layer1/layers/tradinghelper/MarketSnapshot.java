@@ -0,0 +1,86 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * What a helper strategy evaluates on: best prices, volume of the levels the
+ * strategy depends on and working orders of one instrument. Read from
+ * {@link AliasMarketState} holding its monitor, so the evaluation itself runs
+ * without it and strategies sharing the state do not wait for each other.
+ * Orders are copied only when the state is shared, otherwise nobody else
+ * changes those during evaluation. Not thread safe, owned by one instrument.
+ */
+public class MarketSnapshot {
+    /** Copy of orders of a shared state, null if orders are not copied */
+    private final WorkingOrdersIndex ordersCopy;
+    private WorkingOrdersIndex orders;
+
+    private boolean hasBbo;
+    private int bestBid;
+    private int bestAsk;
+    private long volumeBid;
+    private long volumeAsk;
+
+    /**
+     * @param isOrdersCopied true if orders may change while the strategy
+     *            evaluates, i.e. the market state is shared
+     */
+    public MarketSnapshot(boolean isOrdersCopied) {
+        ordersCopy = isOrdersCopied ? new WorkingOrdersIndex() : null;
+    }
+
+    /**
+     * Should be called holding the monitor of the state the book and orders
+     * belong to
+     *
+     * @param volumeBid volume of the bid levels the strategy depends on
+     * @param volumeAsk volume of the ask levels the strategy depends on
+     */
+    void update(PrimitiveOrderBook orderBook, WorkingOrdersIndex orders, long volumeBid, long volumeAsk) {
+        hasBbo = orderBook.hasBbo();
+        bestBid = hasBbo ? orderBook.getBestBid() : 0;
+        bestAsk = hasBbo ? orderBook.getBestAsk() : 0;
+        this.volumeBid = volumeBid;
+        this.volumeAsk = volumeAsk;
+        if (ordersCopy != null) {
+            ordersCopy.copyFrom(orders);
+            this.orders = ordersCopy;
+        } else {
+            this.orders = orders;
+        }
+    }
+
+    /**
+     * @return true if both sides had at least one level
+     */
+    public boolean hasBbo() {
+        return hasBbo;
+    }
+
+    /**
+     * Only valid if {@link #hasBbo()}
+     */
+    public int getBestBid() {
+        return bestBid;
+    }
+
+    /**
+     * Only valid if {@link #hasBbo()}
+     */
+    public int getBestAsk() {
+        return bestAsk;
+    }
+
+    /**
+     * @return volume of {@link Layer1ApiHelperStrategyAbstract#getRelevantLevelsNumber(AliasContext)}
+     *         levels from the best price of one side
+     */
+    public long getTopLevelsSum(boolean isBid) {
+        return isBid ? volumeBid : volumeAsk;
+    }
+
+    /**
+     * @return working orders, must not be modified
+     */
+    public WorkingOrdersIndex getOrders() {
+        return orders;
+    }
+}
@@ -0,0 +1,320 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.common.Log;
+import velox.api.layer1.data.OrderCancelParameters;
+import velox.api.layer1.data.OrderUpdateParameters;
+
+/**
+ * Sends order updates to the provider from its own thread, so market data
+ * processing never waits for broker round-trips. Requests for the same order
+ * that were not sent yet are collapsed: only the latest one is sent, except
+ * that a pending cancel is never replaced by a move. With an
+ * {@link OrderMessageBudget} requests that do not fit into the budget wait in
+ * the queue, where later requests for the same order supersede those, while
+ * requests of other orders that fit are sent.
+ */
+public class OrderDispatcher {
+    /** Longest sleep when no pending request fits into the budget, so new cancels are not delayed much */
+    private static final long MAX_BUDGET_WAIT_NS = 1_000_000;
+    /** Longest time {@link #stop()} spends sending pending cancels */
+    private static final long STOP_TIMEOUT_MS = 1000;
+
+    private static class PendingRequest {
+        final String account;
+        final String alias;
+        final OrderUpdateParameters parameters;
+        final boolean isCancel;
+        final long submitTimeNs;
+        final long eventTimeNs;
+        final LatencyHistogram eventToOrderHistogram;
+
+        PendingRequest(String account, String alias, OrderUpdateParameters parameters, long submitTimeNs, long eventTimeNs,
+                LatencyHistogram eventToOrderHistogram) {
+            this.account = account;
+            this.alias = alias;
+            this.parameters = parameters;
+            this.isCancel = parameters instanceof OrderCancelParameters;
+            this.submitTimeNs = submitTimeNs;
+            this.eventTimeNs = eventTimeNs;
+            this.eventToOrderHistogram = eventToOrderHistogram;
+        }
+    }
+
+    private final Layer1ApiProvider provider;
+    private final String name;
+
+    /** orderId - latest request not sent yet */
+    private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    /** Order ids in the order of their first pending request */
+    private final BlockingQueue<String> ordersQueue = new LinkedBlockingQueue<>();
+
+    private final LongAdder submittedCounter = new LongAdder();
+    private final LongAdder collapsedCounter = new LongAdder();
+    private final LongAdder dispatchedCounter = new LongAdder();
+    private final LongAdder deferredCounter = new LongAdder();
+    private final LongAdder supersededCounter = new LongAdder();
+    private final LongAdder dispatchLatencyTotalNs = new LongAdder();
+    private volatile long dispatchLatencyMaxNs;
+
+    private volatile OrderMessageBudget budget;
+
+    private Thread thread;
+
+    public OrderDispatcher(Layer1ApiProvider provider, String name) {
+        this.provider = provider;
+        this.name = name;
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::run, name + " order dispatcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread. Pending cancels are sent from the calling
+     * thread (within the budget, for up to {@link #STOP_TIMEOUT_MS}), so orders
+     * the strategy decided to pull are not left working. Pending moves are dropped.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        long deadlineNs = System.nanoTime() + STOP_TIMEOUT_MS * 1_000_000;
+        thread.interrupt();
+        try {
+            // request being sent by the thread should not be sent twice
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        int sentCancels = 0;
+        int droppedCancels = 0;
+        int droppedMoves = 0;
+        String orderId;
+        while ((orderId = ordersQueue.poll()) != null) {
+            PendingRequest request = pendingRequests.remove(orderId);
+            if (request == null) {
+                continue;
+            }
+            if (!request.isCancel) {
+                droppedMoves++;
+            } else if (awaitBudget(request, deadlineNs)) {
+                try {
+                    provider.updateOrder(request.parameters);
+                    dispatchedCounter.increment();
+                    sentCancels++;
+                } catch (RuntimeException e) {
+                    Log.error(name + " order dispatcher: failed to cancel order " + orderId, e);
+                }
+            } else {
+                droppedCancels++;
+            }
+        }
+        pendingRequests.clear();
+        if (sentCancels != 0 || droppedCancels != 0 || droppedMoves != 0) {
+            Log.info(name + " order dispatcher: on stop sent " + sentCancels + " pending cancels, dropped "
+                    + droppedCancels + " cancels (budget) and " + droppedMoves + " moves");
+        }
+    }
+
+    /**
+     * @return true if the budget allowed the request before the deadline
+     */
+    private boolean awaitBudget(PendingRequest request, long deadlineNs) {
+        OrderMessageBudget budget = this.budget;
+        if (budget == null) {
+            return true;
+        }
+        while (true) {
+            long nowNs = System.nanoTime();
+            if (budget.tryAcquire(request.account, request.alias, request.isCancel, nowNs)) {
+                return true;
+            }
+            long waitTimeNs = budget.getWaitTimeNs(request.account, request.alias, request.isCancel, nowNs);
+            if (nowNs + waitTimeNs > deadlineNs || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(waitTimeNs);
+        }
+    }
+
+    /**
+     * @param budget limits requests sent by the dispatcher, null for no limit
+     */
+    public void setBudget(OrderMessageBudget budget) {
+        this.budget = budget;
+    }
+
+    public void submit(String orderId, OrderUpdateParameters parameters) {
+        submit(null, null, orderId, parameters, 0, null);
+    }
+
+    /**
+     * @param account account of the order, used for per account budget, can be null
+     * @param alias instrument of the order, used for per instrument budget, can be null
+     * @param eventTimeNs arrival time of the event that caused the request, 0 if unknown
+     * @param eventToOrderHistogram receives time from the event to sending the request, can be null
+     */
+    public void submit(String account, String alias, String orderId, OrderUpdateParameters parameters, long eventTimeNs,
+            LatencyHistogram eventToOrderHistogram) {
+        submittedCounter.increment();
+        PendingRequest request = new PendingRequest(account, alias, parameters, System.nanoTime(), eventTimeNs, eventToOrderHistogram);
+        while (true) {
+            PendingRequest previous = pendingRequests.putIfAbsent(orderId, request);
+            if (previous == null) {
+                ordersQueue.offer(orderId);
+                return;
+            }
+            if (previous.isCancel && !request.isCancel) {
+                // order is going to be cancelled anyway
+                collapsedCounter.increment();
+                return;
+            }
+            if (pendingRequests.replace(orderId, previous, request)) {
+                collapsedCounter.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return number of orders with requests waiting to be sent
+     */
+    public int getQueueDepth() {
+        return pendingRequests.size();
+    }
+
+    public long getSubmittedNumber() {
+        return submittedCounter.sum();
+    }
+
+    /**
+     * @return number of requests that were replaced by a later request for the same order
+     */
+    public long getCollapsedNumber() {
+        return collapsedCounter.sum();
+    }
+
+    /**
+     * @return number of times a request was put back to the queue because of the budget
+     */
+    public long getDeferredNumber() {
+        return deferredCounter.sum();
+    }
+
+    /**
+     * @return number of deferred requests dropped because of a later request for the same order
+     */
+    public long getSupersededNumber() {
+        return supersededCounter.sum();
+    }
+
+    public long getDispatchedNumber() {
+        return dispatchedCounter.sum();
+    }
+
+    public double getAverageDispatchLatencyNs() {
+        long dispatched = dispatchedCounter.sum();
+        return dispatched == 0 ? 0 : (double) dispatchLatencyTotalNs.sum() / dispatched;
+    }
+
+    public long getMaxDispatchLatencyNs() {
+        return dispatchLatencyMaxNs;
+    }
+
+    public String getStatistics() {
+        return String.format("submitted %d, collapsed %d, deferred %d, superseded %d, dispatched %d, queue depth %d, "
+                + "dispatch latency avg %.1f us, max %.1f us",
+                getSubmittedNumber(), getCollapsedNumber(), getDeferredNumber(), getSupersededNumber(),
+                getDispatchedNumber(), getQueueDepth(),
+                getAverageDispatchLatencyNs() / 1000., getMaxDispatchLatencyNs() / 1000.);
+    }
+
+    private void run() {
+        // requests put back in a row and the earliest time one of those fits
+        int deferredInRow = 0;
+        long earliestReadyTimeNs = Long.MAX_VALUE;
+        while (!Thread.currentThread().isInterrupted()) {
+            String orderId;
+            try {
+                orderId = ordersQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            PendingRequest request = pendingRequests.remove(orderId);
+            if (request == null) {
+                continue;
+            }
+
+            long nowNs = System.nanoTime();
+            OrderMessageBudget budget = this.budget;
+            if (budget != null && !budget.tryAcquire(request.account, request.alias, request.isCancel, nowNs)) {
+                defer(orderId, request);
+                earliestReadyTimeNs = Math.min(earliestReadyTimeNs, nowNs + budget.getWaitTimeNs(request.account, request.alias, request.isCancel, nowNs));
+                if (++deferredInRow >= pendingRequests.size()) {
+                    // every pending request was tried, none fits until the budget refills
+                    LockSupport.parkNanos(Math.min(MAX_BUDGET_WAIT_NS, earliestReadyTimeNs - System.nanoTime()));
+                    deferredInRow = 0;
+                    earliestReadyTimeNs = Long.MAX_VALUE;
+                }
+                continue;
+            }
+            deferredInRow = 0;
+            earliestReadyTimeNs = Long.MAX_VALUE;
+
+            long latencyNs = nowNs - request.submitTimeNs;
+            dispatchLatencyTotalNs.add(latencyNs);
+            if (latencyNs > dispatchLatencyMaxNs) {
+                dispatchLatencyMaxNs = latencyNs;
+            }
+            dispatchedCounter.increment();
+            if (request.eventToOrderHistogram != null && request.eventTimeNs != 0) {
+                request.eventToOrderHistogram.record(nowNs - request.eventTimeNs);
+            }
+
+            try {
+                provider.updateOrder(request.parameters);
+            } catch (RuntimeException e) {
+                Log.error(name + " order dispatcher: failed to update order " + orderId, e);
+            }
+        }
+    }
+
+    /**
+     * Puts request back to the end of the queue, unless a later request for
+     * the same order takes its place
+     */
+    private void defer(String orderId, PendingRequest request) {
+        deferredCounter.increment();
+        while (true) {
+            PendingRequest newer = pendingRequests.putIfAbsent(orderId, request);
+            if (newer == null) {
+                ordersQueue.offer(orderId);
+                return;
+            }
+            if (newer.isCancel || !request.isCancel) {
+                supersededCounter.increment();
+                return;
+            }
+            // a move submitted meanwhile does not override the cancel
+            if (pendingRequests.replace(orderId, newer, request)) {
+                supersededCounter.increment();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket limits for order messages (cancels and moves) sent by all
+ * helper strategies together: one bucket per account and one per
+ * instrument. Part of each bucket is reserved for cancels, so when
+ * the budget runs low moves are held back first. Thread safe.
+ */
+public class OrderMessageBudget {
+    /** Share of bucket capacity that only cancels can use */
+    private static final double CANCEL_RESERVE_FRACTION = 0.2;
+
+    private static class TokenBucket {
+        final double tokensPerNs;
+        final double capacity;
+        final double moveThreshold;
+        double tokens;
+        long lastRefillTimeNs;
+
+        TokenBucket(double ratePerSecond, int capacity, long nowNs) {
+            this.tokensPerNs = ratePerSecond / 1e9;
+            this.capacity = Math.max(1, capacity);
+            this.moveThreshold = 1 + this.capacity * CANCEL_RESERVE_FRACTION;
+            this.tokens = this.capacity;
+            this.lastRefillTimeNs = nowNs;
+        }
+
+        void refill(long nowNs) {
+            if (nowNs > lastRefillTimeNs) {
+                tokens = Math.min(capacity, tokens + (nowNs - lastRefillTimeNs) * tokensPerNs);
+                lastRefillTimeNs = nowNs;
+            }
+        }
+
+        double getRequiredTokens(boolean isCancel) {
+            return isCancel ? 1 : Math.min(capacity, moveThreshold);
+        }
+
+        long getWaitTimeNs(boolean isCancel) {
+            double missingTokens = getRequiredTokens(isCancel) - tokens;
+            return missingTokens <= 0 ? 0 : (long) Math.ceil(missingTokens / tokensPerNs);
+        }
+    }
+
+    private static OrderMessageBudget sharedBudget;
+    private static int sharedBudgetUsersNumber;
+
+    private final double ratePerSecond;
+    private final int burst;
+    private final double aliasRatePerSecond;
+    private final int aliasBurst;
+
+    private final Map<String, TokenBucket> accountBuckets = new HashMap<>();
+    private final Map<String, TokenBucket> aliasBuckets = new HashMap<>();
+
+    private final LongAdder grantedCounter = new LongAdder();
+    private final LongAdder throttledCancelsCounter = new LongAdder();
+    private final LongAdder throttledMovesCounter = new LongAdder();
+
+    /**
+     * @param ratePerSecond messages per second for each account, 0 for no limit
+     * @param burst messages that can be sent at once after a quiet period
+     * @param aliasRatePerSecond messages per second for each instrument, 0 for no limit
+     * @param aliasBurst same as burst, for each instrument
+     */
+    public OrderMessageBudget(double ratePerSecond, int burst, double aliasRatePerSecond, int aliasBurst) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.aliasRatePerSecond = aliasRatePerSecond;
+        this.aliasBurst = aliasBurst;
+    }
+
+    /**
+     * Budget shared by all helper strategies, created from the options of the
+     * first strategy requesting it. Each successful call should be paired with
+     * {@link #releaseShared(OrderMessageBudget)}, the budget is dropped once
+     * the last user releases it, so the next one starts from its own options.
+     *
+     * @return null if options do not limit order messages
+     */
+    public static synchronized OrderMessageBudget acquireShared(HelperStrategyOptions options) {
+        if (sharedBudget == null) {
+            if (!options.isMessageBudgetEnabled()) {
+                return null;
+            }
+            sharedBudget = new OrderMessageBudget(options.getMessageBudgetPerSecond(), options.getMessageBudgetBurst(),
+                    options.getAliasMessageBudgetPerSecond(), options.getAliasMessageBudgetBurst());
+        }
+        sharedBudgetUsersNumber++;
+        return sharedBudget;
+    }
+
+    /**
+     * @param budget returned by {@link #acquireShared(HelperStrategyOptions)}
+     */
+    public static synchronized void releaseShared(OrderMessageBudget budget) {
+        if (budget == sharedBudget && --sharedBudgetUsersNumber == 0) {
+            sharedBudget = null;
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the account and the bucket of the instrument
+     *
+     * @param account account sending the message, null if unknown (counted as one more account)
+     * @param alias instrument, null if unknown (only account limit applies)
+     * @return false if the message has to wait, nothing is taken then
+     */
+    public synchronized boolean tryAcquire(String account, String alias, boolean isCancel, long nowNs) {
+        TokenBucket accountBucket = getAccountBucket(account, nowNs);
+        TokenBucket aliasBucket = getAliasBucket(alias, nowNs);
+        if (accountBucket != null) {
+            accountBucket.refill(nowNs);
+        }
+        if (aliasBucket != null) {
+            aliasBucket.refill(nowNs);
+        }
+
+        boolean isAllowed = (accountBucket == null || accountBucket.tokens >= accountBucket.getRequiredTokens(isCancel))
+                && (aliasBucket == null || aliasBucket.tokens >= aliasBucket.getRequiredTokens(isCancel));
+        if (isAllowed) {
+            if (accountBucket != null) {
+                accountBucket.tokens--;
+            }
+            if (aliasBucket != null) {
+                aliasBucket.tokens--;
+            }
+            grantedCounter.increment();
+        } else if (isCancel) {
+            throttledCancelsCounter.increment();
+        } else {
+            throttledMovesCounter.increment();
+        }
+        return isAllowed;
+    }
+
+    /**
+     * @return time until {@link #tryAcquire(String, String, boolean, long)} can
+     *         succeed if no other messages are sent meanwhile
+     */
+    public synchronized long getWaitTimeNs(String account, String alias, boolean isCancel, long nowNs) {
+        long waitTimeNs = 0;
+        TokenBucket accountBucket = getAccountBucket(account, nowNs);
+        if (accountBucket != null) {
+            accountBucket.refill(nowNs);
+            waitTimeNs = accountBucket.getWaitTimeNs(isCancel);
+        }
+        TokenBucket aliasBucket = getAliasBucket(alias, nowNs);
+        if (aliasBucket != null) {
+            aliasBucket.refill(nowNs);
+            waitTimeNs = Math.max(waitTimeNs, aliasBucket.getWaitTimeNs(isCancel));
+        }
+        return waitTimeNs;
+    }
+
+    private TokenBucket getAccountBucket(String account, long nowNs) {
+        if (ratePerSecond <= 0) {
+            return null;
+        }
+        // HashMap allows null key, unknown account is limited like any other
+        return accountBuckets.computeIfAbsent(account, key -> new TokenBucket(ratePerSecond, burst, nowNs));
+    }
+
+    private TokenBucket getAliasBucket(String alias, long nowNs) {
+        if (alias == null || aliasRatePerSecond <= 0) {
+            return null;
+        }
+        return aliasBuckets.computeIfAbsent(alias, key -> new TokenBucket(aliasRatePerSecond, aliasBurst, nowNs));
+    }
+
+    public long getGrantedNumber() {
+        return grantedCounter.sum();
+    }
+
+    /**
+     * @return number of times a cancel had to wait for the budget
+     */
+    public long getThrottledCancelsNumber() {
+        return throttledCancelsCounter.sum();
+    }
+
+    /**
+     * @return number of times a move had to wait for the budget
+     */
+    public long getThrottledMovesNumber() {
+        return throttledMovesCounter.sum();
+    }
+
+    public String getStatistics() {
+        return String.format("limit per account %.1f/s (burst %d), per instrument %.1f/s (burst %d): granted %d, throttled cancels %d, throttled moves %d",
+                ratePerSecond, burst, aliasRatePerSecond, aliasBurst,
+                getGrantedNumber(), getThrottledCancelsNumber(), getThrottledMovesNumber());
+    }
+}
@@ -0,0 +1,57 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Limits how often each order is modified, regardless of the target level
+ * (unlike {@link RequestThrottle}). Not thread safe, owned by one instrument.
+ */
+public class OrderPacer {
+    /** orderId - time of the last modification, in an array to update in place */
+    private final Map<String, long[]> lastRequestTimesMs = new HashMap<>();
+    private long lastPurgeTimeMs;
+
+    /**
+     * @return true if the order was not modified within the interval
+     */
+    public boolean isReady(String orderId, long nowMs, long intervalMs) {
+        long[] lastRequestTimeMs = lastRequestTimesMs.get(orderId);
+        return lastRequestTimeMs == null || nowMs - lastRequestTimeMs[0] >= intervalMs;
+    }
+
+    public void onRequest(String orderId, long nowMs, long intervalMs) {
+        if (nowMs - lastPurgeTimeMs >= intervalMs) {
+            purgeExpired(nowMs - intervalMs);
+            lastPurgeTimeMs = nowMs;
+        }
+
+        long[] lastRequestTimeMs = lastRequestTimesMs.get(orderId);
+        if (lastRequestTimeMs == null) {
+            lastRequestTimesMs.put(orderId, new long[] {nowMs});
+        } else {
+            lastRequestTimeMs[0] = nowMs;
+        }
+    }
+
+    /**
+     * Forgets an order, should be called when it is no longer working
+     */
+    public void removeOrder(String orderId) {
+        lastRequestTimesMs.remove(orderId);
+    }
+
+    public void clear() {
+        lastRequestTimesMs.clear();
+    }
+
+    private void purgeExpired(long expirationTimeMs) {
+        Iterator<long[]> iterator = lastRequestTimesMs.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next()[0] <= expirationTimeMs) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+
+/**
+ * Order requests decided during one evaluation, sent after the orders were
+ * visited (sending may update the orders index). Order ids and target levels
+ * are kept in parallel arrays that are reused, so evaluation does not
+ * allocate once those have grown. Not thread safe, owned by one instrument.
+ */
+public class PendingMoves {
+    private String[] orderIds = new String[16];
+    private int[] levels = new int[16];
+    private int size;
+
+    /**
+     * @param level target price in ticks
+     */
+    public void add(String orderId, int level) {
+        if (size == orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        orderIds[size] = orderId;
+        levels[size] = level;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getOrderId(int index) {
+        return orderIds[index];
+    }
+
+    public int getLevel(int index) {
+        return levels[index];
+    }
+
+    public void clear() {
+        Arrays.fill(orderIds, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,350 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Order book for helper strategies that keeps sizes in primitive arrays.
+ * Each side is a ring buffer indexed by price and centred around the best
+ * price of that side, so level updates and reads near the market do not box
+ * and do not allocate. Levels that are too far from the best price to fit
+ * into the ring are kept in a small overflow map and pulled back into the
+ * ring when it is re-centred.
+ * Each side also maintains a {@link CumulativeDepthIndex} over ring slots,
+ * so volume of a contiguous price range is available in O(log n).
+ * A book can be reset to a snapshot: the snapshot levels are copied, and each
+ * side fills its ring only when it is first accessed.
+ */
+public class PrimitiveOrderBook {
+    /**
+     * Number of price levels kept in the ring of each side. Must be a power of 2.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final BookSide bids;
+    private final BookSide asks;
+
+    public PrimitiveOrderBook() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PrimitiveOrderBook(int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity < 4) {
+            throw new IllegalArgumentException("Capacity should be a power of 2: " + capacity);
+        }
+        bids = new BookSide(true, capacity);
+        asks = new BookSide(false, capacity);
+    }
+
+    public PrimitiveOrderBook(OrderBook orderBook) {
+        this();
+        resetTo(orderBook);
+    }
+
+    /**
+     * Replaces content of this book with the snapshot. Levels are copied, so
+     * the snapshot can be modified afterwards. Like {@link OrderBook} maps,
+     * those should be sorted best price first (bids highest first).
+     */
+    public void resetTo(OrderBook orderBook) {
+        bids.resetTo(orderBook.getBidMap());
+        asks.resetTo(orderBook.getAskMap());
+    }
+
+    /**
+     * @return previous size at this price level
+     */
+    public long onUpdate(boolean isBid, int price, long size) {
+        return getSide(isBid).onUpdate(price, size);
+    }
+
+    public boolean isEmpty(boolean isBid) {
+        return getSide(isBid).isEmpty();
+    }
+
+    /**
+     * @return true if both sides have at least one level
+     */
+    public boolean hasBbo() {
+        return !bids.isEmpty() && !asks.isEmpty();
+    }
+
+    /**
+     * Only valid if the side is not empty
+     */
+    public int getBestPrice(boolean isBid) {
+        return getSide(isBid).getBestPrice();
+    }
+
+    public int getBestBid() {
+        return bids.getBestPrice();
+    }
+
+    public int getBestAsk() {
+        return asks.getBestPrice();
+    }
+
+    public long getSize(boolean isBid, int price) {
+        return getSide(isBid).getSize(price);
+    }
+
+    /**
+     * Sum of sizes on levels [best, best + levelsNumber) counted away from the
+     * market, including empty levels
+     */
+    public long getTopLevelsSum(boolean isBid, int levelsNumber) {
+        return getSide(isBid).getTopLevelsSum(levelsNumber);
+    }
+
+    /**
+     * Sum of sizes on one side for prices in [fromPrice, toPrice]
+     */
+    public long getRangeSum(boolean isBid, int fromPrice, int toPrice) {
+        return getSide(isBid).getRangeSum(fromPrice, toPrice);
+    }
+
+    public void clear() {
+        bids.clear();
+        asks.clear();
+    }
+
+    private BookSide getSide(boolean isBid) {
+        return isBid ? bids : asks;
+    }
+
+    private static class BookSide {
+        private final boolean isBid;
+        private final long[] sizes;
+        private final int mask;
+        private final TreeMap<Integer, Long> overflow = new TreeMap<>();
+        /** Cumulative sizes by ring slot */
+        private final CumulativeDepthIndex depthIndex;
+
+        /** Lowest price covered by the ring, ring covers [windowStart, windowStart + sizes.length) */
+        private int windowStart;
+        /** Number of non-empty levels stored in the ring */
+        private int ringLevels;
+        private int bestPrice;
+        /** Levels not copied into this side yet, null if there are none */
+        private NavigableMap<Integer, Long> snapshot;
+
+        BookSide(boolean isBid, int capacity) {
+            this.isBid = isBid;
+            this.sizes = new long[capacity];
+            this.mask = capacity - 1;
+            this.depthIndex = new CumulativeDepthIndex(capacity);
+        }
+
+        boolean isEmpty() {
+            materialize();
+            return ringLevels == 0 && overflow.isEmpty();
+        }
+
+        int getBestPrice() {
+            materialize();
+            return bestPrice;
+        }
+
+        long onUpdate(int price, long size) {
+            materialize();
+            if (size != 0 && !isInWindow(price) && (isEmpty() || isBetter(price, bestPrice))) {
+                recenter(price);
+            }
+
+            long previousSize;
+            if (isInWindow(price)) {
+                int slot = price & mask;
+                previousSize = sizes[slot];
+                sizes[slot] = size;
+                depthIndex.add(slot, size - previousSize);
+                if (previousSize == 0 && size != 0) {
+                    ringLevels++;
+                } else if (previousSize != 0 && size == 0) {
+                    ringLevels--;
+                }
+            } else {
+                Long previous = size == 0 ? overflow.remove(price) : overflow.put(price, size);
+                previousSize = previous == null ? 0 : previous;
+            }
+
+            if (size != 0) {
+                if (previousSize == 0 && (isBetter(price, bestPrice) || ringLevels + overflow.size() == 1)) {
+                    setBestPrice(price);
+                }
+            } else if (previousSize != 0 && price == bestPrice && !isEmpty()) {
+                setBestPrice(findNextBest(price));
+            }
+
+            return previousSize;
+        }
+
+        long getSize(int price) {
+            materialize();
+            if (isInWindow(price)) {
+                return sizes[price & mask];
+            }
+            return overflow.getOrDefault(price, 0L);
+        }
+
+        long getTopLevelsSum(int levelsNumber) {
+            if (isEmpty() || levelsNumber <= 0) {
+                return 0;
+            }
+
+            // levels number can be as large as Integer.MAX_VALUE (whole side)
+            if (isBid) {
+                return getRangeSum((int) Math.max((long) bestPrice - levelsNumber + 1, Integer.MIN_VALUE), bestPrice);
+            } else {
+                return getRangeSum(bestPrice, (int) Math.min((long) bestPrice + levelsNumber - 1, Integer.MAX_VALUE));
+            }
+        }
+
+        long getRangeSum(int fromPrice, int toPrice) {
+            materialize();
+            if (fromPrice > toPrice) {
+                return 0;
+            }
+
+            int windowEnd = windowStart + sizes.length - 1;
+            int ringFrom = Math.max(fromPrice, windowStart);
+            int ringTo = Math.min(toPrice, windowEnd);
+
+            long result = 0;
+            if (ringLevels != 0 && ringFrom <= ringTo) {
+                int fromSlot = ringFrom & mask;
+                int toSlot = ringTo & mask;
+                if (fromSlot <= toSlot) {
+                    result += depthIndex.rangeSum(fromSlot, toSlot);
+                } else {
+                    result += depthIndex.rangeSum(fromSlot, mask) + depthIndex.prefixSum(toSlot);
+                }
+            }
+
+            // only happens for ranges wider than a quarter of the ring
+            if (!overflow.isEmpty() && (fromPrice < windowStart || toPrice > windowEnd)) {
+                for (long size: overflow.subMap(fromPrice, true, toPrice, true).values()) {
+                    result += size;
+                }
+            }
+
+            return result;
+        }
+
+        void clear() {
+            if (ringLevels != 0) {
+                Arrays.fill(sizes, 0);
+                depthIndex.clear();
+                ringLevels = 0;
+            }
+            overflow.clear();
+            snapshot = null;
+        }
+
+        void resetTo(NavigableMap<Integer, Long> levels) {
+            clear();
+            // same comparator, so bids stay sorted highest price first
+            snapshot = new TreeMap<>(levels.comparator());
+            snapshot.putAll(levels);
+        }
+
+        private void materialize() {
+            if (snapshot == null) {
+                return;
+            }
+
+            NavigableMap<Integer, Long> levels = snapshot;
+            snapshot = null;
+            boolean isFirst = true;
+            // snapshot is sorted best level first, so the ring is centred before levels are placed
+            for (Entry<Integer, Long> entry: levels.entrySet()) {
+                int price = entry.getKey();
+                long size = entry.getValue();
+                if (size == 0) {
+                    continue;
+                }
+                if (isFirst) {
+                    windowStart = price - sizes.length / 2;
+                    bestPrice = price;
+                    isFirst = false;
+                }
+                if (isInWindow(price)) {
+                    sizes[price & mask] = size;
+                    ringLevels++;
+                } else {
+                    overflow.put(price, size);
+                }
+            }
+            depthIndex.build(sizes);
+        }
+
+        private boolean isInWindow(int price) {
+            return price - windowStart >= 0 && price - windowStart < sizes.length;
+        }
+
+        private boolean isBetter(int price, int otherPrice) {
+            return isBid ? price > otherPrice : price < otherPrice;
+        }
+
+        private void setBestPrice(int price) {
+            bestPrice = price;
+            int offset = price - windowStart;
+            int quarter = sizes.length / 4;
+            // keep at least a quarter of the ring on both sides of the best price
+            if (offset < quarter || offset >= sizes.length - quarter) {
+                recenter(price);
+            }
+        }
+
+        private int findNextBest(int removedPrice) {
+            int direction = isBid ? -1 : 1;
+            if (ringLevels != 0) {
+                for (int price = removedPrice + direction; isInWindow(price); price += direction) {
+                    if (sizes[price & mask] != 0) {
+                        return price;
+                    }
+                }
+            }
+            return isBid ? overflow.lastKey() : overflow.firstKey();
+        }
+
+        /**
+         * Moves the ring so that it is centred around given price. Allocates,
+         * but only happens when the best price drifts by a quarter of the ring.
+         */
+        private void recenter(int centerPrice) {
+            int newWindowStart = centerPrice - sizes.length / 2;
+            if (newWindowStart == windowStart) {
+                return;
+            }
+
+            if (ringLevels != 0) {
+                for (int i = 0; i < sizes.length; i++) {
+                    int price = windowStart + i;
+                    int slot = price & mask;
+                    if (sizes[slot] != 0) {
+                        overflow.put(price, sizes[slot]);
+                        sizes[slot] = 0;
+                    }
+                }
+                ringLevels = 0;
+            }
+
+            windowStart = newWindowStart;
+
+            if (!overflow.isEmpty()) {
+                Integer price = overflow.ceilingKey(windowStart);
+                while (price != null && isInWindow(price)) {
+                    sizes[price & mask] = overflow.remove(price);
+                    ringLevels++;
+                    price = overflow.higherKey(price);
+                }
+            }
+
+            depthIndex.build(sizes);
+        }
+    }
+}
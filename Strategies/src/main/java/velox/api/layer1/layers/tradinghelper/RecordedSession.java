@@ -0,0 +1,196 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import velox.api.layer1.simpledemo.datarecording.SpecificFormatTags;
+
+/**
+ * Market data of a recorded session decoded into primitive columns, one row
+ * per event, prices in ticks. Immutable once built, so one instance can be
+ * replayed by any number of threads at the same time.
+ */
+public class RecordedSession {
+    public static final byte DEPTH_BID = 0;
+    public static final byte DEPTH_ASK = 1;
+    public static final byte TRADE_BID_AGGRESSOR = 2;
+    public static final byte TRADE_ASK_AGGRESSOR = 3;
+
+    private final String[] aliases;
+    private final double[] pips;
+
+    private final int eventsNumber;
+    private final long[] timesNs;
+    private final byte[] types;
+    private final int[] instruments;
+    private final int[] prices;
+    private final int[] sizes;
+
+    private RecordedSession(Builder builder) {
+        aliases = builder.aliases.toArray(new String[0]);
+        pips = new double[aliases.length];
+        for (int i = 0; i < pips.length; i++) {
+            pips[i] = builder.pips.get(i);
+        }
+        eventsNumber = builder.eventsNumber;
+        timesNs = Arrays.copyOf(builder.timesNs, eventsNumber);
+        types = Arrays.copyOf(builder.types, eventsNumber);
+        instruments = Arrays.copyOf(builder.instruments, eventsNumber);
+        prices = Arrays.copyOf(builder.prices, eventsNumber);
+        sizes = Arrays.copyOf(builder.sizes, eventsNumber);
+    }
+
+    public int getInstrumentsNumber() {
+        return aliases.length;
+    }
+
+    public String getAlias(int instrument) {
+        return aliases[instrument];
+    }
+
+    public double getPips(int instrument) {
+        return pips[instrument];
+    }
+
+    public int getEventsNumber() {
+        return eventsNumber;
+    }
+
+    public long getTimeNs(int event) {
+        return timesNs[event];
+    }
+
+    /**
+     * @return one of {@link #DEPTH_BID}, {@link #DEPTH_ASK},
+     *         {@link #TRADE_BID_AGGRESSOR}, {@link #TRADE_ASK_AGGRESSOR}
+     */
+    public byte getType(int event) {
+        return types[event];
+    }
+
+    public int getInstrument(int event) {
+        return instruments[event];
+    }
+
+    /**
+     * @return price in ticks
+     */
+    public int getPrice(int event) {
+        return prices[event];
+    }
+
+    public int getSize(int event) {
+        return sizes[event];
+    }
+
+    /**
+     * Reads market data file written by {@link velox.api.layer1.simpledemo.datarecording.SpecificFormatRecorder}.
+     * Instruments are named by symbol.
+     */
+    public static RecordedSession readSpecificFormat(File file) throws IOException {
+        Builder builder = new Builder();
+        Map<Integer, Integer> idToInstrument = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    char tag = fields[0].charAt(0);
+                    long timeNs = Long.parseLong(fields[1]) * 1_000_000;
+                    int id = Integer.parseInt(fields[2]);
+                    switch (tag) {
+                    case SpecificFormatTags.ON_CONTRACT_DETAILS:
+                        idToInstrument.put(id, builder.addInstrument(fields[4], Double.parseDouble(fields[6])));
+                        break;
+                    case SpecificFormatTags.ON_BOOK_UPDATE: {
+                        int instrument = idToInstrument.get(id);
+                        boolean isBid = Integer.parseInt(fields[3]) == SpecificFormatTags.BID_SIDE;
+                        int price = (int) Math.round(Double.parseDouble(fields[4]) / builder.pips.get(instrument));
+                        builder.addDepth(timeNs, instrument, isBid, price, Integer.parseInt(fields[5]));
+                        break;
+                    }
+                    case SpecificFormatTags.ON_TRADE: {
+                        int instrument = idToInstrument.get(id);
+                        int price = (int) Math.round(Double.parseDouble(fields[3]) / builder.pips.get(instrument));
+                        boolean isBidAggressor = Integer.parseInt(fields[5]) > 0;
+                        builder.addTrade(timeNs, instrument, isBidAggressor, price, Integer.parseInt(fields[4]));
+                        break;
+                    }
+                    default:
+                        break;
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Malformed line " + lineNumber + " in " + file + ": " + line, e);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+        private final List<String> aliases = new ArrayList<>();
+        private final List<Double> pips = new ArrayList<>();
+
+        private int eventsNumber;
+        private long[] timesNs = new long[1024];
+        private byte[] types = new byte[1024];
+        private int[] instruments = new int[1024];
+        private int[] prices = new int[1024];
+        private int[] sizes = new int[1024];
+
+        /**
+         * @return instrument index
+         */
+        public int addInstrument(String alias, double pips) {
+            aliases.add(alias);
+            this.pips.add(pips);
+            return aliases.size() - 1;
+        }
+
+        public Builder addDepth(long timeNs, int instrument, boolean isBid, int price, int size) {
+            add(timeNs, isBid ? DEPTH_BID : DEPTH_ASK, instrument, price, size);
+            return this;
+        }
+
+        public Builder addTrade(long timeNs, int instrument, boolean isBidAggressor, int price, int size) {
+            add(timeNs, isBidAggressor ? TRADE_BID_AGGRESSOR : TRADE_ASK_AGGRESSOR, instrument, price, size);
+            return this;
+        }
+
+        public RecordedSession build() {
+            return new RecordedSession(this);
+        }
+
+        private void add(long timeNs, byte type, int instrument, int price, int size) {
+            if (instrument < 0 || instrument >= aliases.size()) {
+                throw new IllegalArgumentException("Unknown instrument " + instrument);
+            }
+            if (eventsNumber == timesNs.length) {
+                int newLength = timesNs.length * 2;
+                timesNs = Arrays.copyOf(timesNs, newLength);
+                types = Arrays.copyOf(types, newLength);
+                instruments = Arrays.copyOf(instruments, newLength);
+                prices = Arrays.copyOf(prices, newLength);
+                sizes = Arrays.copyOf(sizes, newLength);
+            }
+            timesNs[eventsNumber] = timeNs;
+            types[eventsNumber] = type;
+            instruments[eventsNumber] = instrument;
+            prices[eventsNumber] = price;
+            sizes[eventsNumber] = size;
+            eventsNumber++;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Remembers when a request (cancel / move to level) was last made for an
+ * (order, level) pair, to avoid request spam. Entries expire after the delay,
+ * orders are dropped once those stop working, and expired orders are purged
+ * at most once per delay period, so memory stays proportional to the number
+ * of recently touched orders. Not thread safe, owned by one instrument.
+ */
+public class RequestThrottle {
+    private static class OrderRequests {
+        int[] levels = new int[2];
+        long[] timesMs = new long[2];
+        int size;
+
+        /**
+         * Drops entries older than expiration time, preserving order of the rest
+         */
+        void removeExpired(long expirationTimeMs) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (timesMs[i] > expirationTimeMs) {
+                    levels[newSize] = levels[i];
+                    timesMs[newSize] = timesMs[i];
+                    newSize++;
+                }
+            }
+            size = newSize;
+        }
+
+        int indexOf(int level) {
+            for (int i = 0; i < size; i++) {
+                if (levels[i] == level) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(int level, long timeMs) {
+            if (size == levels.length) {
+                int newLength = levels.length * 2;
+                levels = Arrays.copyOf(levels, newLength);
+                timesMs = Arrays.copyOf(timesMs, newLength);
+            }
+            levels[size] = level;
+            timesMs[size] = timeMs;
+            size++;
+        }
+    }
+
+    private final long delayMs;
+    private final Map<String, OrderRequests> ordersMap = new HashMap<>();
+    private long lastPurgeTimeMs;
+
+    public RequestThrottle(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    /**
+     * Checks if request for given order and level is allowed and if it is,
+     * records it as made at given time
+     *
+     * @return true if no request was made for this order and level within the delay
+     */
+    public boolean tryAcquire(String orderId, int level, long nowMs) {
+        long expirationTimeMs = nowMs - delayMs;
+        if (nowMs - lastPurgeTimeMs >= delayMs) {
+            purgeExpired(expirationTimeMs);
+            lastPurgeTimeMs = nowMs;
+        }
+
+        OrderRequests requests = ordersMap.get(orderId);
+        if (requests == null) {
+            requests = new OrderRequests();
+            ordersMap.put(orderId, requests);
+        } else {
+            requests.removeExpired(expirationTimeMs);
+        }
+
+        int index = requests.indexOf(level);
+        if (index >= 0) {
+            return false;
+        }
+
+        requests.add(level, nowMs);
+        return true;
+    }
+
+    /**
+     * Forgets a request recorded by {@link #tryAcquire(String, int, long)}
+     * that was not made after all, so it can be retried right away
+     */
+    public void release(String orderId, int level) {
+        OrderRequests requests = ordersMap.get(orderId);
+        if (requests != null) {
+            int index = requests.indexOf(level);
+            if (index >= 0) {
+                requests.size--;
+                System.arraycopy(requests.levels, index + 1, requests.levels, index, requests.size - index);
+                System.arraycopy(requests.timesMs, index + 1, requests.timesMs, index, requests.size - index);
+            }
+        }
+    }
+
+    /**
+     * Forgets requests of an order, should be called when it is no longer working
+     */
+    public void removeOrder(String orderId) {
+        ordersMap.remove(orderId);
+    }
+
+    public void clear() {
+        ordersMap.clear();
+    }
+
+    /**
+     * @return number of orders with requests that might not be expired yet
+     */
+    public int getOrdersNumber() {
+        return ordersMap.size();
+    }
+
+    private void purgeExpired(long expirationTimeMs) {
+        Iterator<OrderRequests> iterator = ordersMap.values().iterator();
+        while (iterator.hasNext()) {
+            OrderRequests requests = iterator.next();
+            requests.removeExpired(expirationTimeMs);
+            if (requests.size == 0) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-instrument market state shared by all helper strategies loaded in the
+ * same Bookmap instance, so the book of an instrument is maintained once no
+ * matter how many helpers are enabled. States are reference counted: created
+ * by the first {@link #acquire(String, Object)} and dropped when the last
+ * subscriber releases those.
+ */
+public class SharedMarketStateService {
+    private static final Map<String, AliasMarketState> statesMap = new HashMap<>();
+
+    private SharedMarketStateService() {
+    }
+
+    /**
+     * Attaches subscriber to the state of the instrument
+     */
+    public static AliasMarketState acquire(String alias, Object subscriber) {
+        synchronized (statesMap) {
+            AliasMarketState state = statesMap.computeIfAbsent(alias, AliasMarketState::new);
+            synchronized (state) {
+                state.addSubscriber(subscriber);
+            }
+            return state;
+        }
+    }
+
+    public static void release(AliasMarketState state, Object subscriber) {
+        synchronized (statesMap) {
+            boolean isUnused;
+            synchronized (state) {
+                isUnused = state.removeSubscriber(subscriber);
+            }
+            if (isUnused) {
+                statesMap.remove(state.getAlias(), state);
+            }
+        }
+    }
+
+    /**
+     * @return number of instruments with attached subscribers
+     */
+    public static int getStatesNumber() {
+        synchronized (statesMap) {
+            return statesMap.size();
+        }
+    }
+}
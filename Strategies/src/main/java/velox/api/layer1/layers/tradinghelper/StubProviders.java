@@ -0,0 +1,99 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.data.OrderUpdateParameters;
+import velox.api.layer1.messages.indicators.SettingsAccess;
+
+/**
+ * Minimal implementations of Bookmap interfaces for running helper
+ * strategies outside of Bookmap (backtests, benchmarks). Calls that are not
+ * handled do nothing and return default values.
+ */
+public class StubProviders {
+    private StubProviders() {
+    }
+
+    /**
+     * @param updateOrderListener receives all order updates sent by the strategy
+     */
+    public static Layer1ApiProvider createProvider(Consumer<OrderUpdateParameters> updateOrderListener) {
+        return createProxy(Layer1ApiProvider.class, (proxy, method, args) -> {
+            if (method.getName().equals("updateOrder")) {
+                updateOrderListener.accept((OrderUpdateParameters) args[0]);
+                return null;
+            }
+            return getDefaultValue(proxy, method, args);
+        });
+    }
+
+    /**
+     * @param settingsFactory creates settings for (alias, settings class)
+     *        when the strategy requests those, settings are not stored
+     */
+    public static SettingsAccess createSettingsAccess(BiFunction<String, Class<?>, Object> settingsFactory) {
+        return createProxy(SettingsAccess.class, (proxy, method, args) -> {
+            if (method.getName().equals("getSettings")) {
+                return settingsFactory.apply((String) args[0], (Class<?>) args[2]);
+            }
+            return getDefaultValue(proxy, method, args);
+        });
+    }
+
+    /**
+     * @return settings access creating default settings for each request
+     */
+    public static SettingsAccess createSettingsAccess() {
+        return createSettingsAccess((alias, settingsClass) -> {
+            try {
+                return settingsClass.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Settings class has no default constructor: " + settingsClass, e);
+            }
+        });
+    }
+
+    private static <T> T createProxy(Class<T> interfaceClass, InvocationHandler handler) {
+        return interfaceClass.cast(Proxy.newProxyInstance(StubProviders.class.getClassLoader(),
+                new Class<?>[] {interfaceClass}, handler));
+    }
+
+    private static Object getDefaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "toString":
+            return "Stub " + method.getDeclaringClass().getSimpleName();
+        default:
+            break;
+        }
+
+        Class<?> returnType = method.getReturnType();
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        } else if (returnType == boolean.class) {
+            return false;
+        } else if (returnType == char.class) {
+            return (char) 0;
+        } else if (returnType == byte.class) {
+            return (byte) 0;
+        } else if (returnType == short.class) {
+            return (short) 0;
+        } else if (returnType == int.class) {
+            return 0;
+        } else if (returnType == long.class) {
+            return 0L;
+        } else if (returnType == float.class) {
+            return 0f;
+        } else {
+            return 0d;
+        }
+    }
+}
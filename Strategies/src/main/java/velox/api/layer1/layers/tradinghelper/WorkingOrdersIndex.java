@@ -0,0 +1,232 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Working limit orders of one instrument, kept sorted by price per side, so
+ * strategies can visit only orders in a price range instead of scanning all
+ * of them. Order handles are reused while the order is working, so updates
+ * that do not change the price do not allocate. Not thread safe, owned by one
+ * instrument.
+ */
+public class WorkingOrdersIndex {
+    public static class OrderHandle {
+        private final String orderId;
+        private boolean isBuy;
+        /** Price in ticks */
+        private int price;
+
+        private OrderHandle(String orderId, boolean isBuy, int price) {
+            this.orderId = orderId;
+            this.isBuy = isBuy;
+            this.price = price;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        public boolean isBuy() {
+            return isBuy;
+        }
+
+        public int getPrice() {
+            return price;
+        }
+    }
+
+    private static class Side {
+        OrderHandle[] orders = new OrderHandle[16];
+        int size;
+
+        /**
+         * @return index of the first order with price not less than given one
+         */
+        int lowerBound(int price) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (orders[middle].price < price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void insert(OrderHandle handle) {
+            if (size == orders.length) {
+                orders = Arrays.copyOf(orders, size * 2);
+            }
+            int index = lowerBound(handle.price + 1);
+            System.arraycopy(orders, index, orders, index + 1, size - index);
+            orders[index] = handle;
+            size++;
+        }
+
+        void remove(OrderHandle handle) {
+            for (int i = lowerBound(handle.price); i < size && orders[i].price == handle.price; i++) {
+                if (orders[i] == handle) {
+                    System.arraycopy(orders, i + 1, orders, i, size - i - 1);
+                    orders[--size] = null;
+                    return;
+                }
+            }
+            throw new IllegalStateException("Order " + handle.orderId + " is not indexed at " + handle.price);
+        }
+
+        void clear() {
+            Arrays.fill(orders, 0, size, null);
+            size = 0;
+        }
+    }
+
+    private final Map<String, OrderHandle> handles = new HashMap<>();
+    private final Side bids = new Side();
+    private final Side asks = new Side();
+
+    /**
+     * Adds order or updates its price
+     *
+     * @param price price in ticks
+     */
+    public void update(String orderId, int price, boolean isBuy) {
+        OrderHandle handle = handles.get(orderId);
+        if (handle == null) {
+            handle = new OrderHandle(orderId, isBuy, price);
+            handles.put(orderId, handle);
+            getSide(isBuy).insert(handle);
+        } else if (handle.price != price || handle.isBuy != isBuy) {
+            getSide(handle.isBuy).remove(handle);
+            handle.price = price;
+            handle.isBuy = isBuy;
+            getSide(isBuy).insert(handle);
+        }
+    }
+
+    /**
+     * @return handle of the order, null if it is not indexed
+     */
+    public OrderHandle get(String orderId) {
+        return handles.get(orderId);
+    }
+
+    /**
+     * @return true if order was indexed
+     */
+    public boolean remove(String orderId) {
+        OrderHandle handle = handles.remove(orderId);
+        if (handle == null) {
+            return false;
+        }
+        getSide(handle.isBuy).remove(handle);
+        return true;
+    }
+
+    public void clear() {
+        handles.clear();
+        bids.clear();
+        asks.clear();
+    }
+
+    /**
+     * Makes this index a copy of another one. Handles of orders present in
+     * both are reused, so copying an index that did not change much does not
+     * allocate.
+     */
+    public void copyFrom(WorkingOrdersIndex other) {
+        if (handles.size() != 0) {
+            handles.keySet().retainAll(other.handles.keySet());
+        }
+        copySide(other.bids, bids);
+        copySide(other.asks, asks);
+    }
+
+    private void copySide(Side from, Side to) {
+        if (to.orders.length < from.size) {
+            to.orders = Arrays.copyOf(to.orders, from.orders.length);
+        }
+        for (int i = 0; i < from.size; i++) {
+            OrderHandle source = from.orders[i];
+            OrderHandle handle = handles.get(source.orderId);
+            if (handle == null) {
+                handle = new OrderHandle(source.orderId, source.isBuy, source.price);
+                handles.put(source.orderId, handle);
+            } else {
+                handle.isBuy = source.isBuy;
+                handle.price = source.price;
+            }
+            to.orders[i] = handle;
+        }
+        if (to.size > from.size) {
+            Arrays.fill(to.orders, from.size, to.size, null);
+        }
+        to.size = from.size;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    public boolean isEmpty(boolean isBuy) {
+        return getSide(isBuy).size == 0;
+    }
+
+    /**
+     * @return number of orders of one side
+     */
+    public int size(boolean isBuy) {
+        return getSide(isBuy).size;
+    }
+
+    /**
+     * @param index position among orders of one side in ascending price order
+     */
+    public OrderHandle get(boolean isBuy, int index) {
+        return getSide(isBuy).orders[index];
+    }
+
+    /**
+     * @return position of the first order of one side with price not less
+     *         than given one, {@link #size(boolean)} if there is none. Together
+     *         with {@link #get(boolean, int)} allows visiting a price range
+     *         without a callback.
+     */
+    public int lowerBound(boolean isBuy, int price) {
+        return getSide(isBuy).lowerBound(price);
+    }
+
+    /**
+     * Visits orders of one side with prices in [minPrice, maxPrice] in
+     * ascending price order. Index must not be modified by the consumer.
+     */
+    public void forEachInRange(boolean isBuy, int minPrice, int maxPrice, Consumer<OrderHandle> consumer) {
+        if (minPrice > maxPrice) {
+            return;
+        }
+        Side side = getSide(isBuy);
+        for (int i = side.lowerBound(minPrice); i < side.size && side.orders[i].price <= maxPrice; i++) {
+            consumer.accept(side.orders[i]);
+        }
+    }
+
+    /**
+     * Visits all orders of one side in ascending price order. Index must not
+     * be modified by the consumer.
+     */
+    public void forEach(boolean isBuy, Consumer<OrderHandle> consumer) {
+        Side side = getSide(isBuy);
+        for (int i = 0; i < side.size; i++) {
+            consumer.accept(side.orders[i]);
+        }
+    }
+
+    private Side getSide(boolean isBuy) {
+        return isBuy ? bids : asks;
+    }
+}
@@ -243,6 +243,16 @@ public class CustomPriceAlertDemo implements
                     .setShowPopup(currentSettings.isPopupActive)
                     .build();
                 provider.sendUserMessage(soundAlertMessage);
+
+                PriceAlertEvent event = new PriceAlertEvent();
+                if (event.isEnabled()) {
+                    event.alias = alias;
+                    event.declarationId = declarationMessage.id;
+                    event.triggerDescription = declarationMessage.triggerDescription;
+                    event.price = price;
+                    event.size = size;
+                    event.commit();
+                }
             };
         
             TradeMatcher tradeMatcher = new TradeMatcher(tradePredicate, onMatchCallback);
@@ -0,0 +1,33 @@
+package velox.api.layer1.simpledemo.alerts.tradeprice;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for an alert fired by {@link CustomPriceAlertDemo}
+ */
+@Name("velox.alert.PriceAlert")
+@Label("Price Alert")
+@Category({"Bookmap", "Alerts"})
+@Description("Trade matching a custom price alert")
+@StackTrace(false)
+public class PriceAlertEvent extends Event {
+    @Label("Instrument")
+    String alias;
+
+    @Label("Alert Declaration Id")
+    String declarationId;
+
+    @Label("Trigger")
+    String triggerDescription;
+
+    @Label("Price")
+    double price;
+
+    @Label("Size")
+    double size;
+}
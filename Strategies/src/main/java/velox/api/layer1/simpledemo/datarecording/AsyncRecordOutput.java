@@ -0,0 +1,236 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves file writes off the data thread. Committed records are copied into a
+ * preallocated ring and a writer thread drains it to a {@link FileChannel}
+ * in groups: once enough bytes are collected or the oldest of them waited for
+ * the group commit delay. The data thread only blocks if the ring is full.
+ * One thread may write records at a time.
+ */
+public class AsyncRecordOutput implements BinaryRecordOutput {
+
+    public enum SyncPolicy {
+        /** Leave it to the operating system when data reaches the disk */
+        NONE,
+        /** Force written data to the disk every sync interval */
+        PERIODIC,
+        /** Force written data to the disk when closing */
+        ON_CLOSE
+    }
+
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final FileChannel channel;
+    private final ByteBuffer ring;
+    private final int mask;
+    private final int groupCommitBytes;
+    private final long groupCommitDelayNs;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalNs;
+
+    /** Total bytes committed, written by the data thread only */
+    private final AtomicLong writePosition = new AtomicLong();
+    /** Total bytes written to the channel, written by the writer thread only */
+    private final AtomicLong readPosition = new AtomicLong();
+    private long cachedReadPosition;
+
+    private ByteBuffer recordBuffer = ByteBuffer.allocateDirect(256);
+
+    private final Thread writerThread;
+    private volatile boolean isClosing;
+    private volatile IOException writerException;
+
+    private final AtomicLong groupCommitsCounter = new AtomicLong();
+    private long ringFullStallsNumber;
+
+    /**
+     * @param ringSize capacity of the ring in bytes, rounded up to a power of 2
+     * @param groupCommitBytes bytes to collect before writing
+     * @param groupCommitDelayMs longest time a committed record waits to be written
+     * @param syncIntervalMs interval of forcing data to disk for {@link SyncPolicy#PERIODIC}
+     */
+    public AsyncRecordOutput(Path file, int ringSize, int groupCommitBytes, long groupCommitDelayMs,
+            SyncPolicy syncPolicy, long syncIntervalMs) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(1024, ringSize - 1)) << 1;
+        ring = ByteBuffer.allocateDirect(capacity);
+        mask = capacity - 1;
+        this.groupCommitBytes = Math.max(1, Math.min(groupCommitBytes, capacity / 2));
+        this.groupCommitDelayNs = TimeUnit.MILLISECONDS.toNanos(groupCommitDelayMs);
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalNs = TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        writerThread = new Thread(this::runWriter, "FeedRecorder writer " + file.getFileName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public ByteBuffer claim(int size) {
+        if (recordBuffer.capacity() < size) {
+            recordBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        recordBuffer.clear();
+        return recordBuffer;
+    }
+
+    @Override
+    public void commit() throws IOException {
+        recordBuffer.flip();
+        int length = recordBuffer.remaining();
+        long position = writePosition.get();
+        if (length > ring.capacity()) {
+            throw new IOException("Record of " + length + " bytes does not fit into the ring");
+        }
+        while (position + length - cachedReadPosition > ring.capacity()) {
+            cachedReadPosition = readPosition.get();
+            if (position + length - cachedReadPosition > ring.capacity()) {
+                ringFullStallsNumber++;
+                checkWriter();
+                LockSupport.unpark(writerThread);
+                LockSupport.parkNanos(FULL_PARK_NS);
+            }
+        }
+
+        int offset = (int) (position & mask);
+        int firstChunk = Math.min(length, ring.capacity() - offset);
+        // absolute bulk put is Java 16+
+        ByteBuffer target = ring.duplicate();
+        target.position(offset);
+        recordBuffer.limit(firstChunk);
+        target.put(recordBuffer);
+        if (firstChunk < length) {
+            target.position(0);
+            recordBuffer.limit(length);
+            target.put(recordBuffer);
+        }
+        // publishes the record to the writer thread
+        writePosition.lazySet(position + length);
+    }
+
+    /**
+     * Waits until everything committed so far is written to the channel
+     */
+    @Override
+    public void flush() throws IOException {
+        long position = writePosition.get();
+        while (readPosition.get() < position) {
+            checkWriter();
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(FULL_PARK_NS);
+        }
+        checkWriter();
+    }
+
+    /**
+     * Drains the ring, stops the writer thread and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        isClosing = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while draining recording", e);
+        }
+        try {
+            checkWriter();
+            if (syncPolicy != SyncPolicy.NONE) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void checkWriter() throws IOException {
+        IOException exception = writerException;
+        if (exception != null) {
+            throw new IOException("Writing recording failed", exception);
+        }
+    }
+
+    private void runWriter() {
+        ByteBuffer[] chunks = {ring.duplicate(), ring.duplicate()};
+        long position = readPosition.get();
+        long firstPendingTimeNs = 0;
+        long lastSyncTimeNs = System.nanoTime();
+        try {
+            while (true) {
+                boolean isDraining = isClosing;
+                long endPosition = writePosition.get();
+                long pendingBytes = endPosition - position;
+                long nowNs = System.nanoTime();
+                if (pendingBytes == 0) {
+                    if (isDraining) {
+                        return;
+                    }
+                    firstPendingTimeNs = 0;
+                } else if (firstPendingTimeNs == 0) {
+                    firstPendingTimeNs = nowNs;
+                }
+
+                if (pendingBytes > 0 && (isDraining || pendingBytes >= groupCommitBytes
+                        || nowNs - firstPendingTimeNs >= groupCommitDelayNs)) {
+                    writeChunks(chunks, position, endPosition);
+                    position = endPosition;
+                    readPosition.lazySet(position);
+                    groupCommitsCounter.incrementAndGet();
+                    firstPendingTimeNs = 0;
+                    if (syncPolicy == SyncPolicy.PERIODIC && nowNs - lastSyncTimeNs >= syncIntervalNs) {
+                        channel.force(false);
+                        lastSyncTimeNs = nowNs;
+                    }
+                } else {
+                    long parkNs = pendingBytes == 0 ? IDLE_PARK_NS
+                            : Math.min(IDLE_PARK_NS, groupCommitDelayNs - (nowNs - firstPendingTimeNs));
+                    LockSupport.parkNanos(Math.max(1, parkNs));
+                }
+            }
+        } catch (IOException e) {
+            writerException = e;
+        }
+    }
+
+    private void writeChunks(ByteBuffer[] chunks, long startPosition, long endPosition) throws IOException {
+        int offset = (int) (startPosition & mask);
+        int length = (int) (endPosition - startPosition);
+        int firstChunk = Math.min(length, ring.capacity() - offset);
+        chunks[0].limit(offset + firstChunk).position(offset);
+        chunks[1].limit(length - firstChunk).position(0);
+        while (chunks[0].hasRemaining() || chunks[1].hasRemaining()) {
+            channel.write(chunks);
+        }
+    }
+
+    /**
+     * @return number of writes to the file
+     */
+    public long getGroupCommitsNumber() {
+        return groupCommitsCounter.get();
+    }
+
+    /**
+     * @return number of times a record waited for space in the ring
+     */
+    public long getRingFullStallsNumber() {
+        return ringFullStallsNumber;
+    }
+
+    public long getWrittenBytes() {
+        return readPosition.get();
+    }
+}
@@ -0,0 +1,276 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads recordings written by {@link BinaryFormatRecorder}
+ */
+public class BinaryFormatReader {
+
+    public interface Listener {
+        void onFeedSource(long timeNs, String dataSource);
+
+        void onInstrumentAdded(long timeNs, int handle, String alias, String exchange, String symbol, String type,
+                double pips, double multiplier, double sizeMultiplier);
+
+        /**
+         * @param price price in ticks
+         */
+        void onTrade(long timeNs, int handle, int price, int size, boolean isBidAggressor);
+
+        /**
+         * @param price price in ticks
+         */
+        void onDepth(long timeNs, int handle, boolean isBid, int price, int size);
+
+        void onOrderData(long timeNs, String data);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean isEndOfChannel;
+
+    private long lastTimeNs;
+    private int[] lastPrices = new int[16];
+
+    public BinaryFormatReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Reads all records from the channel, which must be positioned at the start
+     * of a recording
+     */
+    public void read(Listener listener) throws IOException {
+        require(5);
+        if (getFixedInt() != BinaryFormatTags.FILE_MAGIC) {
+            throw new IOException("Not a binary feed recording");
+        }
+        int version = buffer.get();
+        if (version != BinaryFormatRecorder.FORMAT_VERSION) {
+            throw new IOException("Unsupported binary feed recording version " + version);
+        }
+        while (ensure(1)) {
+            byte tag = buffer.get();
+            if (tag == BinaryFormatTags.END_OF_RECORDS) {
+                break;
+            }
+            readRecord(tag, listener);
+        }
+    }
+
+    private void readRecord(byte tag, Listener listener) throws IOException {
+        switch (tag) {
+        case BinaryFormatTags.ON_FEED_SOURCE:
+            listener.onFeedSource(readTime(), readString());
+            break;
+        case BinaryFormatTags.ON_CONTRACT_DETAILS: {
+            long timeNs = readTime();
+            int handle = readVarInt();
+            if (handle >= lastPrices.length) {
+                lastPrices = Arrays.copyOf(lastPrices, Math.max(handle + 1, lastPrices.length * 2));
+            }
+            lastPrices[handle] = 0;
+            String alias = readString();
+            String exchange = readString();
+            String symbol = readString();
+            String type = readString();
+            require(3 * 8);
+            listener.onInstrumentAdded(timeNs, handle, alias, exchange, symbol, type,
+                    Double.longBitsToDouble(getFixedLong()), Double.longBitsToDouble(getFixedLong()),
+                    Double.longBitsToDouble(getFixedLong()));
+            break;
+        }
+        case BinaryFormatTags.ON_TRADE_BID_AGGRESSOR:
+        case BinaryFormatTags.ON_TRADE_ASK_AGGRESSOR: {
+            long timeNs = readTime();
+            int handle = readVarInt();
+            int price = readPrice(handle);
+            listener.onTrade(timeNs, handle, price, readVarInt(), tag == BinaryFormatTags.ON_TRADE_BID_AGGRESSOR);
+            break;
+        }
+        case BinaryFormatTags.ON_BOOK_UPDATE_BID:
+        case BinaryFormatTags.ON_BOOK_UPDATE_ASK: {
+            long timeNs = readTime();
+            int handle = readVarInt();
+            int price = readPrice(handle);
+            listener.onDepth(timeNs, handle, tag == BinaryFormatTags.ON_BOOK_UPDATE_BID, price, readVarInt());
+            break;
+        }
+        case BinaryFormatTags.ON_ORDER_DATA:
+            listener.onOrderData(readTime(), readString());
+            break;
+        default:
+            throw new IOException("Unknown record tag " + tag);
+        }
+    }
+
+    private long readTime() throws IOException {
+        lastTimeNs += unZigZag(readVarLong());
+        return lastTimeNs;
+    }
+
+    private int readPrice(int handle) throws IOException {
+        lastPrices[handle] += unZigZag(readVarInt());
+        return lastPrices[handle];
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            require(1);
+            int chunk = Math.min(length - offset, buffer.remaining());
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private int getFixedInt() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (buffer.get() & 0xFF) << (8 * i);
+        }
+        return value;
+    }
+
+    private long getFixedLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (buffer.get() & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void require(int size) throws IOException {
+        if (!ensure(size)) {
+            throw new EOFException("Recording ends in the middle of a record");
+        }
+    }
+
+    /**
+     * @return false if the channel ends before size bytes are available
+     */
+    private boolean ensure(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < size && !isEndOfChannel) {
+            isEndOfChannel = channel.read(buffer) < 0;
+        }
+        buffer.flip();
+        return buffer.remaining() >= size;
+    }
+
+    /**
+     * Prints a recording as text, one record per line
+     */
+    public static void print(Path file, PrintStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new BinaryFormatReader(channel).read(new TextPrinter(out));
+        }
+    }
+
+    /**
+     * Prints records in a format similar to the one of {@link SpecificFormatRecorder}
+     */
+    public static class TextPrinter implements Listener {
+        private final PrintStream out;
+        private final List<String> aliases = new ArrayList<>();
+        private final List<Double> pips = new ArrayList<>();
+
+        public TextPrinter(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void onFeedSource(long timeNs, String dataSource) {
+            out.println("f," + timeNs + "," + dataSource);
+        }
+
+        @Override
+        public void onInstrumentAdded(long timeNs, int handle, String alias, String exchange, String symbol,
+                String type, double pips, double multiplier, double sizeMultiplier) {
+            while (aliases.size() <= handle) {
+                aliases.add(null);
+                this.pips.add(1.);
+            }
+            aliases.set(handle, alias);
+            this.pips.set(handle, pips);
+            out.println("c," + timeNs + "," + alias + "," + exchange + "," + symbol + "," + type + "," + pips + ","
+                    + multiplier + "," + sizeMultiplier);
+        }
+
+        @Override
+        public void onTrade(long timeNs, int handle, int price, int size, boolean isBidAggressor) {
+            out.println("T," + timeNs + "," + aliases.get(handle) + "," + price * pips.get(handle) + "," + size + ","
+                    + (isBidAggressor ? 1 : -1));
+        }
+
+        @Override
+        public void onDepth(long timeNs, int handle, boolean isBid, int price, int size) {
+            out.println("r," + timeNs + "," + aliases.get(handle) + ","
+                    + (isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE) + ","
+                    + price * pips.get(handle) + "," + size);
+        }
+
+        @Override
+        public void onOrderData(long timeNs, String data) {
+            out.println("o," + timeNs + "," + data);
+        }
+    }
+
+    /**
+     * Usage: <code>BinaryFormatReader &lt;recording file&gt;</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: BinaryFormatReader <recording file>");
+            System.exit(1);
+        }
+        print(Paths.get(args[0]), System.out);
+    }
+}
@@ -0,0 +1,227 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import velox.api.layer1.data.InstrumentInfo;
+
+/**
+ * Compact binary counterpart of {@link SpecificFormatRecorder}. Every record
+ * is a one-byte tag (see {@link BinaryFormatTags}) followed by variable
+ * length integers: time as a zig-zag delta to the previous record, price in
+ * ticks as a zig-zag delta to the previous price of the same instrument and
+ * size as is. A typical depth update takes 5-8 bytes instead of about 40
+ * characters, and nothing is allocated while encoding market data.
+ * <p>
+ * Instruments are referred to by handles returned from
+ * {@link #onInstrumentAdded(long, String, InstrumentInfo)}. Each segment of a
+ * segmented output starts with the data source and all instruments again.
+ * Use {@link BinaryFormatReader} to read recordings back. Not thread safe.
+ */
+public class BinaryFormatRecorder implements Closeable {
+
+    public static final int FORMAT_VERSION = 1;
+
+    /** tag, time delta, handle, price delta and size */
+    private static final int MAX_MARKET_RECORD_SIZE = 1 + 10 + 5 + 5 + 5;
+
+    private final BinaryRecordOutput output;
+    private final byte[] sourceBytes;
+    /** Handle and details of each instrument, to be repeated in segment headers */
+    private final List<byte[]> instrumentDetails = new ArrayList<>();
+    private int segmentNumber;
+
+    private long lastTimeNs;
+    private int[] lastPrices = new int[16];
+
+    /**
+     * @param timeNs recording start time, in nanoseconds
+     */
+    public BinaryFormatRecorder(BinaryRecordOutput output, long timeNs, String dataSource) throws IOException {
+        this.output = output;
+        sourceBytes = dataSource.getBytes(StandardCharsets.UTF_8);
+        segmentNumber = output.getSegmentNumber();
+        lastTimeNs = timeNs;
+        putHeader(output.claim(getHeaderSize()));
+        output.commit();
+    }
+
+    /**
+     * @return handle of the instrument to pass to other methods
+     */
+    public int onInstrumentAdded(long timeNs, String alias, InstrumentInfo instrumentInfo) throws IOException {
+        int handle = instrumentDetails.size();
+        if (handle == lastPrices.length) {
+            lastPrices = Arrays.copyOf(lastPrices, handle * 2);
+        }
+        lastPrices[handle] = 0;
+
+        byte[] aliasBytes = alias.getBytes(StandardCharsets.UTF_8);
+        byte[] exchangeBytes = String.valueOf(instrumentInfo.exchange).getBytes(StandardCharsets.UTF_8);
+        byte[] symbolBytes = String.valueOf(instrumentInfo.symbol).getBytes(StandardCharsets.UTF_8);
+        byte[] typeBytes = String.valueOf(instrumentInfo.type).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer details = ByteBuffer.allocate(5 + 4 * 5 + aliasBytes.length + exchangeBytes.length
+                + symbolBytes.length + typeBytes.length + 3 * 8);
+        putVarInt(details, handle);
+        putBytes(details, aliasBytes);
+        putBytes(details, exchangeBytes);
+        putBytes(details, symbolBytes);
+        putBytes(details, typeBytes);
+        putFixedLong(details, Double.doubleToLongBits(instrumentInfo.pips));
+        putFixedLong(details, Double.doubleToLongBits(instrumentInfo.multiplier));
+        putFixedLong(details, Double.doubleToLongBits(instrumentInfo.sizeMultiplier));
+        byte[] detailsBytes = Arrays.copyOf(details.array(), details.position());
+
+        ByteBuffer buffer = claim(1 + 10 + detailsBytes.length);
+        buffer.put(BinaryFormatTags.ON_CONTRACT_DETAILS);
+        putTime(buffer, timeNs);
+        buffer.put(detailsBytes);
+        output.commit();
+        // added after claim, so a header written by it does not include the instrument twice
+        instrumentDetails.add(detailsBytes);
+        return handle;
+    }
+
+    /**
+     * @param price price in ticks (as received by the data listener)
+     */
+    public void onTrade(long timeNs, int handle, int price, int size, boolean isBidAggressor) throws IOException {
+        ByteBuffer buffer = claim(MAX_MARKET_RECORD_SIZE);
+        buffer.put(isBidAggressor ? BinaryFormatTags.ON_TRADE_BID_AGGRESSOR : BinaryFormatTags.ON_TRADE_ASK_AGGRESSOR);
+        putMarketData(buffer, timeNs, handle, price, size);
+        output.commit();
+    }
+
+    /**
+     * @param price price in ticks (as received by the data listener)
+     */
+    public void onDepth(long timeNs, int handle, boolean isBid, int price, int size) throws IOException {
+        ByteBuffer buffer = claim(MAX_MARKET_RECORD_SIZE);
+        buffer.put(isBid ? BinaryFormatTags.ON_BOOK_UPDATE_BID : BinaryFormatTags.ON_BOOK_UPDATE_ASK);
+        putMarketData(buffer, timeNs, handle, price, size);
+        output.commit();
+    }
+
+    public void onOrderData(long timeNs, String data) throws IOException {
+        byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = claim(1 + 10 + 5 + dataBytes.length);
+        buffer.put(BinaryFormatTags.ON_ORDER_DATA);
+        putTime(buffer, timeNs);
+        putBytes(buffer, dataBytes);
+        output.commit();
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Claims space for a record, preceded by a header if the output has
+     * started a new segment
+     */
+    private ByteBuffer claim(int size) throws IOException {
+        ByteBuffer buffer = output.claim(size);
+        if (output.getSegmentNumber() != segmentNumber) {
+            segmentNumber = output.getSegmentNumber();
+            buffer = output.claim(getHeaderSize() + size);
+            putHeader(buffer);
+        }
+        return buffer;
+    }
+
+    private int getHeaderSize() {
+        int size = 4 + 1 + 1 + 10 + 5 + sourceBytes.length;
+        for (byte[] details: instrumentDetails) {
+            size += 1 + 10 + details.length;
+        }
+        return size;
+    }
+
+    /**
+     * Puts the file header, data source and all instruments, and starts deltas
+     * over, so reading can start from here
+     */
+    private void putHeader(ByteBuffer buffer) {
+        long timeNs = lastTimeNs;
+        lastTimeNs = 0;
+        Arrays.fill(lastPrices, 0);
+        output.onSegmentStarted(timeNs);
+
+        putFixedInt(buffer, BinaryFormatTags.FILE_MAGIC);
+        buffer.put((byte) FORMAT_VERSION);
+        buffer.put(BinaryFormatTags.ON_FEED_SOURCE);
+        putTime(buffer, timeNs);
+        putBytes(buffer, sourceBytes);
+        for (byte[] details: instrumentDetails) {
+            buffer.put(BinaryFormatTags.ON_CONTRACT_DETAILS);
+            putTime(buffer, timeNs);
+            buffer.put(details);
+        }
+    }
+
+    private void putMarketData(ByteBuffer buffer, long timeNs, int handle, int price, int size) {
+        putTime(buffer, timeNs);
+        putVarInt(buffer, handle);
+        putVarInt(buffer, zigZag(price - lastPrices[handle]));
+        putVarInt(buffer, size);
+        lastPrices[handle] = price;
+    }
+
+    private void putTime(ByteBuffer buffer, long timeNs) {
+        // time can go back, e.g. on rewind in replay
+        putVarLong(buffer, zigZag(timeNs - lastTimeNs));
+        lastTimeNs = timeNs;
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        putVarInt(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /** Little endian regardless of the buffer order */
+    private static void putFixedInt(ByteBuffer buffer, int value) {
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) (value >>> (8 * i)));
+        }
+    }
+
+    private static void putFixedLong(ByteBuffer buffer, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer.put((byte) (value >>> (8 * i)));
+        }
+    }
+}
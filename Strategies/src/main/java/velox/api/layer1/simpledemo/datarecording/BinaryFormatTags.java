@@ -0,0 +1,24 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+/**
+ * Tags of {@link BinaryFormatRecorder} records, one byte each
+ */
+public class BinaryFormatTags {
+
+    /** "BFR1", first 4 bytes of the file (little endian) */
+    public static final int FILE_MAGIC = 0x31524642;
+
+    /** Unused space at the end of a fixed-size segment */
+    public static final byte END_OF_RECORDS = 0;
+
+    public static final byte ON_FEED_SOURCE = 'f';
+    public static final byte ON_CONTRACT_DETAILS = 'c';
+
+    public static final byte ON_TRADE_BID_AGGRESSOR = 'T';
+    public static final byte ON_TRADE_ASK_AGGRESSOR = 't';
+
+    public static final byte ON_BOOK_UPDATE_BID = 'B';
+    public static final byte ON_BOOK_UPDATE_ASK = 'A';
+
+    public static final byte ON_ORDER_DATA = 'o';
+}
@@ -0,0 +1,49 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination of {@link BinaryFormatRecorder} records. A record is put into
+ * the buffer returned by {@link #claim(int)} and completed with
+ * {@link #commit()}, so outputs can hand out their own memory without copying.
+ */
+public interface BinaryRecordOutput extends Closeable {
+
+    /**
+     * @param size maximum size of the record
+     * @return buffer with at least size bytes remaining, the record should be
+     *         put at its position
+     */
+    ByteBuffer claim(int size) throws IOException;
+
+    /**
+     * Completes the record put into the last claimed buffer
+     */
+    void commit() throws IOException;
+
+    /**
+     * Pushes completed records to the file
+     */
+    void flush() throws IOException;
+
+    /**
+     * Outputs split into parts that should be readable on their own change
+     * this number when a new part starts. The recorder then writes its header
+     * and instruments again and starts deltas over.
+     */
+    default int getSegmentNumber() {
+        return 0;
+    }
+
+    /**
+     * Called by the recorder when it puts the header of a segment
+     *
+     * @param timeNs time of the last record before the segment (or the
+     *            recording start time), records of the segment are not earlier
+     *            unless time goes back
+     */
+    default void onSegmentStarted(long timeNs) {
+    }
+}
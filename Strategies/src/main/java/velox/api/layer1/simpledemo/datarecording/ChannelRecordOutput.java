@@ -0,0 +1,64 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Collects records in a reusable direct buffer and writes it to a
+ * {@link FileChannel} once full, so writing is one system call per buffer
+ * rather than per record. Not thread safe.
+ */
+public class ChannelRecordOutput implements BinaryRecordOutput {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+
+    public ChannelRecordOutput(Path file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelRecordOutput(Path file, int bufferSize) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public ByteBuffer claim(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+            if (buffer.capacity() < size) {
+                // only for unusually long strings
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+
+/**
+ * Collects records into blocks (64 KB by default) that are deflated and
+ * written by a background thread. Each block is a segment (see
+ * {@link BinaryRecordOutput#getSegmentNumber()}), so it can be decompressed
+ * and read on its own. The footer indexes blocks by time, so
+ * {@link CompressedRecordingReader} can start reading at any time while only
+ * decompressing the blocks it needs.
+ * <p>
+ * File layout (little endian): magic, block size, blocks (compressed size,
+ * uncompressed size, deflated data), index entries (block time in
+ * nanoseconds, block offset), then index offset, entries number and magic
+ * again. Records can only be written by one thread at a time.
+ */
+public class CompressedRecordOutput implements BinaryRecordOutput {
+
+    /** "BFZ1" */
+    static final int FILE_MAGIC = 0x315A4642;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int FOOTER_SIZE = 16;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /** Blocks filled or compressed at the same time */
+    private static final int BLOCKS_NUMBER = 4;
+
+    private static class Block {
+        final ByteBuffer data;
+        long timeNs;
+
+        Block(int size) {
+            data = ByteBuffer.allocate(size);
+        }
+    }
+
+    /** Tells the compressor thread to finish */
+    private static final Block END_OF_BLOCKS = new Block(0);
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int compressionLevel;
+
+    private final BlockingQueue<Block> freeBlocks = new ArrayBlockingQueue<>(BLOCKS_NUMBER);
+    private final BlockingQueue<Block> filledBlocks = new ArrayBlockingQueue<>(BLOCKS_NUMBER + 1);
+    private Block block;
+    private int segmentNumber;
+    private long segmentTimeNs;
+
+    private final Thread compressorThread;
+    private volatile IOException compressorException;
+    /** Written by the compressor thread, read after it is finished */
+    private ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    public CompressedRecordOutput(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public CompressedRecordOutput(Path file, int blockSize, int compressionLevel) throws IOException {
+        this.blockSize = blockSize;
+        this.compressionLevel = compressionLevel;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FILE_MAGIC).putInt(blockSize).flip();
+        writeFully(header);
+
+        for (int i = 0; i < BLOCKS_NUMBER; i++) {
+            freeBlocks.add(new Block(blockSize));
+        }
+        block = freeBlocks.poll();
+        compressorThread = new Thread(this::runCompressor, "FeedRecorder compressor " + file.getFileName());
+        compressorThread.setDaemon(true);
+        compressorThread.start();
+    }
+
+    /**
+     * A claim never moves to the next block if nothing was put into the
+     * current one yet, so the recorder can put block headers and the first
+     * record at once. Records (with block headers) larger than the block size
+     * are rejected, blocks are never reallocated.
+     */
+    @Override
+    public ByteBuffer claim(int size) throws IOException {
+        if (block.data.remaining() < size) {
+            if (size > blockSize) {
+                throw new IOException("Record of " + size + " bytes does not fit into a block");
+            }
+            submitBlock();
+        }
+        return block.data;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    @Override
+    public void onSegmentStarted(long timeNs) {
+        segmentTimeNs = timeNs;
+    }
+
+    /**
+     * Compresses the current block even if it is not full and waits until all
+     * blocks are written
+     */
+    @Override
+    public void flush() throws IOException {
+        if (block.data.position() > 0) {
+            submitBlock();
+        }
+        while (freeBlocks.size() < BLOCKS_NUMBER - 1) {
+            checkCompressor();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        checkCompressor();
+    }
+
+    /**
+     * Compresses remaining records, writes the index and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (block.data.position() > 0) {
+                submitBlock();
+            }
+            putBlock(END_OF_BLOCKS);
+            compressorThread.join();
+            checkCompressor();
+
+            long indexOffset = channel.size();
+            int entriesNumber = index.position() / INDEX_ENTRY_SIZE;
+            index.flip();
+            writeFully(index);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            footer.putLong(indexOffset).putInt(entriesNumber).putInt(FILE_MAGIC).flip();
+            writeFully(footer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing recording", e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Hands the current block to the compressor and starts the next segment
+     */
+    private void submitBlock() throws IOException {
+        block.timeNs = segmentTimeNs;
+        putBlock(block);
+        try {
+            Block nextBlock;
+            do {
+                checkCompressor();
+                nextBlock = freeBlocks.poll(10, TimeUnit.MILLISECONDS);
+            } while (nextBlock == null);
+            block = nextBlock;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compressor", e);
+        }
+        segmentNumber++;
+    }
+
+    private void putBlock(Block block) throws IOException {
+        try {
+            filledBlocks.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for compressor", e);
+        }
+    }
+
+    private void checkCompressor() throws IOException {
+        IOException exception = compressorException;
+        if (exception != null) {
+            throw new IOException("Compressing recording failed", exception);
+        }
+    }
+
+    private void runCompressor() {
+        Deflater deflater = new Deflater(compressionLevel);
+        byte[] compressed = new byte[blockSize + blockSize / 16 + 64];
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (true) {
+                Block filledBlock = filledBlocks.take();
+                if (filledBlock == END_OF_BLOCKS) {
+                    return;
+                }
+                ByteBuffer data = filledBlock.data;
+                deflater.reset();
+                deflater.setInput(data.array(), 0, data.position());
+                deflater.finish();
+                int compressedSize = 0;
+                while (!deflater.finished()) {
+                    if (compressedSize == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+                }
+
+                long offset = channel.position();
+                blockHeader.clear();
+                blockHeader.putInt(compressedSize).putInt(data.position()).flip();
+                writeFully(blockHeader);
+                writeFully(ByteBuffer.wrap(compressed, 0, compressedSize));
+                if (!index.hasRemaining()) {
+                    index = ByteBuffer.allocate(index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN).put(index.flip());
+                }
+                index.putLong(filledBlock.timeNs).putLong(offset);
+
+                data.clear();
+                freeBlocks.add(filledBlock);
+            }
+        } catch (IOException e) {
+            compressorException = e;
+        } catch (InterruptedException e) {
+            compressorException = new IOException("Compressor interrupted", e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
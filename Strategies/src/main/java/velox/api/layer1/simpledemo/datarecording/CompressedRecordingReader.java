@@ -0,0 +1,205 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads recordings written through {@link CompressedRecordOutput}. Reading
+ * can start at any time: the index is searched for the block to start from,
+ * and only that and following blocks are decompressed.
+ */
+public class CompressedRecordingReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long[] blockTimesNs;
+    private final long[] blockOffsets;
+
+    public CompressedRecordingReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(0, CompressedRecordOutput.FILE_HEADER_SIZE);
+            ByteBuffer footer = readFully(channel.size() - CompressedRecordOutput.FOOTER_SIZE,
+                    CompressedRecordOutput.FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            int entriesNumber = footer.getInt();
+            if (header.getInt() != CompressedRecordOutput.FILE_MAGIC || footer.getInt() != CompressedRecordOutput.FILE_MAGIC) {
+                throw new IOException("Not a complete compressed feed recording: " + file);
+            }
+
+            ByteBuffer index = readFully(indexOffset, entriesNumber * CompressedRecordOutput.INDEX_ENTRY_SIZE);
+            blockTimesNs = new long[entriesNumber];
+            blockOffsets = new long[entriesNumber];
+            for (int i = 0; i < entriesNumber; i++) {
+                blockTimesNs[i] = index.getLong();
+                blockOffsets[i] = index.getLong();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getBlocksNumber() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Reads all records
+     */
+    public void read(BinaryFormatReader.Listener listener) throws IOException {
+        read(Long.MIN_VALUE, listener);
+    }
+
+    /**
+     * Reads records with time not earlier than fromTimeNs. Data source and
+     * instruments are passed to the listener regardless of time (once, though
+     * every block repeats those), so handles can be resolved.
+     */
+    public void read(long fromTimeNs, BinaryFormatReader.Listener listener) throws IOException {
+        BitSet knownHandles = new BitSet();
+        BinaryFormatReader.Listener filter = new BinaryFormatReader.Listener() {
+            private boolean isSourceKnown;
+
+            @Override
+            public void onFeedSource(long timeNs, String dataSource) {
+                if (!isSourceKnown) {
+                    isSourceKnown = true;
+                    listener.onFeedSource(timeNs, dataSource);
+                }
+            }
+
+            @Override
+            public void onInstrumentAdded(long timeNs, int handle, String alias, String exchange, String symbol,
+                    String type, double pips, double multiplier, double sizeMultiplier) {
+                if (!knownHandles.get(handle)) {
+                    knownHandles.set(handle);
+                    listener.onInstrumentAdded(timeNs, handle, alias, exchange, symbol, type, pips, multiplier, sizeMultiplier);
+                }
+            }
+
+            @Override
+            public void onTrade(long timeNs, int handle, int price, int size, boolean isBidAggressor) {
+                if (timeNs >= fromTimeNs) {
+                    listener.onTrade(timeNs, handle, price, size, isBidAggressor);
+                }
+            }
+
+            @Override
+            public void onDepth(long timeNs, int handle, boolean isBid, int price, int size) {
+                if (timeNs >= fromTimeNs) {
+                    listener.onDepth(timeNs, handle, isBid, price, size);
+                }
+            }
+
+            @Override
+            public void onOrderData(long timeNs, String data) {
+                if (timeNs >= fromTimeNs) {
+                    listener.onOrderData(timeNs, data);
+                }
+            }
+        };
+
+        Inflater inflater = new Inflater();
+        try {
+            for (int block = findFirstBlock(fromTimeNs); block < blockOffsets.length; block++) {
+                byte[] data = readBlock(block, inflater);
+                // blocks start over, so each is read as a separate recording
+                new BinaryFormatReader(Channels.newChannel(new ByteArrayInputStream(data))).read(filter);
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return last block starting before the time, as records of that time
+     *         may also be at the end of the previous block
+     */
+    private int findFirstBlock(long fromTimeNs) {
+        int low = 0;
+        int high = blockTimesNs.length - 1;
+        int result = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blockTimesNs[middle] < fromTimeNs) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    private byte[] readBlock(int block, Inflater inflater) throws IOException {
+        ByteBuffer blockHeader = readFully(blockOffsets[block], CompressedRecordOutput.BLOCK_HEADER_SIZE);
+        int compressedSize = blockHeader.getInt();
+        int uncompressedSize = blockHeader.getInt();
+        ByteBuffer compressed = readFully(blockOffsets[block] + CompressedRecordOutput.BLOCK_HEADER_SIZE, compressedSize);
+
+        byte[] data = new byte[uncompressedSize];
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedSize);
+        try {
+            int length = 0;
+            while (length < uncompressedSize && !inflater.finished()) {
+                length += inflater.inflate(data, length, uncompressedSize - length);
+                if (inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (length != uncompressedSize) {
+                throw new IOException("Block " + block + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " is corrupted", e);
+        }
+        return data;
+    }
+
+    private ByteBuffer readFully(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of compressed feed recording");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Usage: <code>CompressedRecordingReader &lt;recording file&gt; [start time, e.g. 2024-01-02T14:30:00Z]</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: CompressedRecordingReader <recording file> [start time, e.g. 2024-01-02T14:30:00Z]");
+            System.exit(1);
+        }
+        long fromTimeNs = Long.MIN_VALUE;
+        if (args.length == 2) {
+            Instant from = Instant.parse(args[1]);
+            fromTimeNs = from.getEpochSecond() * 1_000_000_000L + from.getNano();
+        }
+        try (CompressedRecordingReader reader = new CompressedRecordingReader(Paths.get(args[0]))) {
+            reader.read(fromTimeNs, new BinaryFormatReader.TextPrinter(System.out));
+        }
+    }
+}
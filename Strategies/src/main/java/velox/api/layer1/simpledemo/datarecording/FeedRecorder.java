@@ -2,8 +2,12 @@ package velox.api.layer1.simpledemo.datarecording;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.Deflater;
 
 import javax.swing.JCheckBox;
 
@@ -18,6 +22,7 @@ import velox.api.layer1.annotations.Layer1ApiVersionValue;
 import velox.api.layer1.annotations.Layer1Attachable;
 import velox.api.layer1.annotations.Layer1StrategyName;
 import velox.api.layer1.common.ListenableHelper;
+import velox.api.layer1.common.Log;
 import velox.api.layer1.data.ExecutionInfo;
 import velox.api.layer1.data.InstrumentInfo;
 import velox.api.layer1.data.OrderInfoUpdate;
@@ -29,6 +34,11 @@ import velox.gui.StrategyPanel;
  * strategy and writes it to text file in working
  * directory("C:\Bookmap\Config").
  * In replay mode you should not use rewind functionality with this strategy.
+ * The compact binary format of {@link BinaryFormatRecorder} (in one file, in
+ * memory mapped segments per instrument or in compressed blocks) can be
+ * chosen with {@link FeedRecorderOptions}.
+ * Callbacks may come from different threads, and recorders are not thread
+ * safe, so all writes are done under one lock.
  */
 
 @Layer1Attachable
@@ -37,21 +47,59 @@ import velox.gui.StrategyPanel;
 public class FeedRecorder implements Layer1CustomPanelsGetter, Layer1ApiDataAdapter, Layer1ApiFinishable,
         Layer1ApiInstrumentAdapter, Layer1ApiTradingAdapter {
 
+    /**
+     * Finished orders that still wait for executions, the oldest ones are
+     * forgotten beyond this number
+     */
+    private static final int MAX_FINISHED_ORDERS = 1024;
+
+    private final Layer1ApiProvider provider;
+    private final FeedRecorderOptions options;
     private SpecificFormatRecorder recorder;
+    private BinaryFormatRecorder binaryRecorder;
+    /** Recorders of {@link FeedRecorderOptions.Format#SEGMENTED} format, one per instrument */
+    private Map<String, BinaryFormatRecorder> segmentedRecorders = new HashMap<>();
+    /** Guards recorders and maps below */
+    private final Object writeLock = new Object();
+    /** orderId - order, to find instrument of executions in segmented format */
+    private Map<String, RecordedOrder> orders = new HashMap<>();
+    /** Ids of finished orders in {@link #orders}, oldest first */
+    private ArrayDeque<String> finishedOrders = new ArrayDeque<>();
     private Map<String, InstrumentInfo> instruments = new TreeMap<>();
     private Map<String, Integer> instrumentIds = new TreeMap<>();
     private JCheckBox recordTrades = new JCheckBox("Record trades", true);
     private JCheckBox recordOrders = new JCheckBox("Record orders", true);
 
     public FeedRecorder(Layer1ApiProvider provider) throws IOException {
-        File depthRecordsFile = new File(System.getProperty("user.dir"), "FeedRecorder_demo_depth-" + System.currentTimeMillis() + ".txt");
-        File ordersRecordsFile = new File(System.getProperty("user.dir"), "FeedRecorder_demo_orders-"  + System.currentTimeMillis() + ".txt");
-        recorder = new SpecificFormatRecorder(System.currentTimeMillis(), depthRecordsFile, ordersRecordsFile,
-                provider.getSource());
+        this.provider = provider;
+        options = FeedRecorderOptions.fromSystemProperties();
+        // segmented recorders are created per instrument
+        if (options.getFormat() == FeedRecorderOptions.Format.BINARY) {
+            File recordsFile = new File(options.getDirectory(), "FeedRecorder_demo-" + System.currentTimeMillis() + ".bfr");
+            binaryRecorder = new BinaryFormatRecorder(createOutput(recordsFile), provider.getCurrentTime(), provider.getSource());
+        } else if (options.getFormat() == FeedRecorderOptions.Format.COMPRESSED) {
+            File recordsFile = new File(options.getDirectory(), "FeedRecorder_demo-" + System.currentTimeMillis() + ".bfz");
+            binaryRecorder = new BinaryFormatRecorder(new CompressedRecordOutput(recordsFile.toPath(),
+                    options.getCompressionBlockSize(), Deflater.DEFAULT_COMPRESSION),
+                    provider.getCurrentTime(), provider.getSource());
+        } else if (options.getFormat() == FeedRecorderOptions.Format.TEXT) {
+            File depthRecordsFile = new File(options.getDirectory(), "FeedRecorder_demo_depth-" + System.currentTimeMillis() + ".txt");
+            File ordersRecordsFile = new File(options.getDirectory(), "FeedRecorder_demo_orders-"  + System.currentTimeMillis() + ".txt");
+            // without the writer thread every text record is written right away, as it always was
+            recorder = new SpecificFormatRecorder(System.currentTimeMillis(), createOutput(depthRecordsFile),
+                    createOutput(ordersRecordsFile), provider.getSource(), !options.isAsyncWriting());
+        }
         // register listener to get data
         ListenableHelper.addListeners(provider, this);
     }
 
+    private BinaryRecordOutput createOutput(File file) throws IOException {
+        return options.isAsyncWriting()
+                ? new AsyncRecordOutput(file.toPath(), options.getAsyncRingSize(), options.getGroupCommitBytes(),
+                        options.getGroupCommitDelayMs(), options.getSyncPolicy(), options.getSyncIntervalMs())
+                : new ChannelRecordOutput(file.toPath());
+    }
+
     @Override
     public StrategyPanel[] getCustomGuiFor(String alias, String indicatorName) {
         StrategyPanel settingsPanel = new StrategyPanel("FeedRecorder demo");
@@ -63,38 +111,111 @@ public class FeedRecorder implements Layer1CustomPanelsGetter, Layer1ApiDataAdap
     @Override
     public void onTrade(String alias, double price, int size, TradeInfo tradeInfo) {
         if (recordTrades.isEnabled()) {
-            try {
-                recorder.onTrade(instrumentIds.get(alias), instruments.get(alias).pips * price, size,
-                        tradeInfo.isBidAggressor ? 1 : -1, 0);
-            } catch (IOException e) {
-                throwRuntimeException(e);
+            synchronized (writeLock) {
+                RecorderWriteEvent event = new RecorderWriteEvent();
+                event.begin();
+                try {
+                    if (isBinaryFormat()) {
+                        // binary format keeps whole ticks, trades between levels are rare
+                        getBinaryRecorder(alias).onTrade(provider.getCurrentTime(), instrumentIds.get(alias), (int) Math.round(price), size,
+                                tradeInfo.isBidAggressor);
+                    } else {
+                        recorder.onTrade(instrumentIds.get(alias), instruments.get(alias).pips * price, size,
+                                tradeInfo.isBidAggressor ? 1 : -1, 0);
+                    }
+                } catch (IOException e) {
+                    throwRuntimeException(e);
+                }
+                commitWriteEvent(event, "trade", alias);
             }
         }
     }
 
     @Override
     public void onDepth(String alias, boolean isBid, int price, int size) {
-        try {
-            recorder.onDepth(instrumentIds.get(alias), isBid, instruments.get(alias).pips * price, size);
-        } catch (IOException e) {
-            throwRuntimeException(e);
+        synchronized (writeLock) {
+            RecorderWriteEvent event = new RecorderWriteEvent();
+            event.begin();
+            try {
+                if (isBinaryFormat()) {
+                    getBinaryRecorder(alias).onDepth(provider.getCurrentTime(), instrumentIds.get(alias), isBid, price, size);
+                } else {
+                    recorder.onDepth(instrumentIds.get(alias), isBid, instruments.get(alias).pips * price, size);
+                }
+            } catch (IOException e) {
+                throwRuntimeException(e);
+            }
+            commitWriteEvent(event, "depth", alias);
         }
     }
 
     @Override
     public void finish() {
-        // We could close recorder here if it would be something more complex
+        // records are buffered or written by another thread, so have to be drained
+        synchronized (writeLock) {
+            try {
+                if (binaryRecorder != null) {
+                    binaryRecorder.close();
+                } else if (recorder != null) {
+                    recorder.close();
+                }
+                for (BinaryFormatRecorder segmentedRecorder: segmentedRecorders.values()) {
+                    segmentedRecorder.close();
+                }
+                segmentedRecorders.clear();
+            } catch (IOException e) {
+                throwRuntimeException(e);
+            }
+        }
     }
 
     @Override
     public void onInstrumentAdded(String alias, InstrumentInfo instrumentInfo) {
-        instruments.put(alias, instrumentInfo);
-        int id = (int)(Math.random() * Integer.MAX_VALUE);
-        instrumentIds.put(alias, id);
-        try {
-            recorder.onInstrumentAdded(id, instrumentInfo);
-        } catch (IOException e) {
-            throwRuntimeException(e);
+        synchronized (writeLock) {
+            instruments.put(alias, instrumentInfo);
+            RecorderWriteEvent event = new RecorderWriteEvent();
+            event.begin();
+            try {
+                if (options.getFormat() == FeedRecorderOptions.Format.SEGMENTED) {
+                    BinaryFormatRecorder segmentedRecorder = new BinaryFormatRecorder(new SegmentedRecordOutput(
+                            Paths.get(options.getDirectory()), alias, options.getSegmentSize(),
+                            options.getRetentionPolicy(), options.getRetainedSegmentsNumber()),
+                            provider.getCurrentTime(), provider.getSource());
+                    segmentedRecorders.put(alias, segmentedRecorder);
+                    instrumentIds.put(alias, segmentedRecorder.onInstrumentAdded(provider.getCurrentTime(), alias, instrumentInfo));
+                } else if (binaryRecorder != null) {
+                    instrumentIds.put(alias, binaryRecorder.onInstrumentAdded(provider.getCurrentTime(), alias, instrumentInfo));
+                } else {
+                    int id = (int)(Math.random() * Integer.MAX_VALUE);
+                    instrumentIds.put(alias, id);
+                    recorder.onInstrumentAdded(id, instrumentInfo);
+                }
+            } catch (IOException e) {
+                throwRuntimeException(e);
+            }
+            commitWriteEvent(event, "instrument", alias);
+        }
+    }
+
+    private boolean isBinaryFormat() {
+        return options.getFormat() != FeedRecorderOptions.Format.TEXT;
+    }
+
+    private BinaryFormatRecorder getBinaryRecorder(String alias) {
+        return binaryRecorder != null ? binaryRecorder : segmentedRecorders.get(alias);
+    }
+
+    /**
+     * @param alias instrument of the order, null if unknown
+     */
+    private void writeOrderData(String alias, String data) throws IOException {
+        if (isBinaryFormat()) {
+            BinaryFormatRecorder aliasRecorder = getBinaryRecorder(alias);
+            if (aliasRecorder != null) {
+                aliasRecorder.onOrderData(provider.getCurrentTime(), data);
+            }
+        } else {
+            recorder.onOrderData(data);
         }
     }
 
@@ -102,31 +223,130 @@ public class FeedRecorder implements Layer1CustomPanelsGetter, Layer1ApiDataAdap
         throw new RuntimeException(e);
     }
 
+    /**
+     * Commits {@link RecorderWriteEvent} started before the write, if JFR records it
+     */
+    private void commitWriteEvent(RecorderWriteEvent event, String recordType, String alias) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.recordType = recordType;
+            event.alias = alias;
+            event.commit();
+        }
+    }
+
     @Override
     public void onInstrumentRemoved(String alias) {
-        instruments.remove(alias);
-        instrumentIds.remove(alias);
+        synchronized (writeLock) {
+            instruments.remove(alias);
+            instrumentIds.remove(alias);
+            BinaryFormatRecorder segmentedRecorder = segmentedRecorders.remove(alias);
+            if (segmentedRecorder != null) {
+                try {
+                    segmentedRecorder.close();
+                } catch (IOException e) {
+                    throwRuntimeException(e);
+                }
+            }
+        }
     }
 
     @Override
     public void onOrderUpdated(OrderInfoUpdate orderInfoUpdate) {
-        if (recordOrders.isEnabled()) {
-            try {
-                recorder.onOrderData(orderInfoUpdate.toString());
-            } catch (IOException e) {
-                throwRuntimeException(e);
+        synchronized (writeLock) {
+            // tracked even if orders are not recorded, so those can be enabled later
+            if (options.getFormat() == FeedRecorderOptions.Format.SEGMENTED) {
+                trackOrder(orderInfoUpdate);
+            }
+            if (recordOrders.isEnabled()) {
+                RecorderWriteEvent event = new RecorderWriteEvent();
+                event.begin();
+                try {
+                    writeOrderData(orderInfoUpdate.instrumentAlias, orderInfoUpdate.toString());
+                } catch (IOException e) {
+                    throwRuntimeException(e);
+                }
+                commitWriteEvent(event, "order", orderInfoUpdate.instrumentAlias);
             }
         }
     }
 
     @Override
     public void onOrderExecuted(ExecutionInfo executionInfo) {
-        if (recordOrders.isEnabled()) {
-            try {
-                recorder.onOrderData(executionInfo.toString());
-            } catch (IOException e) {
-                throwRuntimeException(e);
+        synchronized (writeLock) {
+            String alias = null;
+            if (options.getFormat() == FeedRecorderOptions.Format.SEGMENTED) {
+                RecordedOrder order = orders.get(executionInfo.orderId);
+                if (order == null) {
+                    Log.warn("FeedRecorder: instrument of order " + executionInfo.orderId
+                            + " is unknown, execution is not recorded");
+                    return;
+                }
+                alias = order.alias;
+                order.executedSize += executionInfo.size;
+                if (order.isDone()) {
+                    orders.remove(executionInfo.orderId);
+                }
+            }
+            if (recordOrders.isEnabled()) {
+                RecorderWriteEvent event = new RecorderWriteEvent();
+                event.begin();
+                try {
+                    writeOrderData(alias, executionInfo.toString());
+                } catch (IOException e) {
+                    throwRuntimeException(e);
+                }
+                commitWriteEvent(event, "execution", alias);
+            }
+        }
+    }
+
+    /**
+     * Keeps instrument of the order until its last execution. An order that
+     * is done may still get executions (updates and executions can come in
+     * any order), so it is forgotten only once executions add up to its
+     * filled size.
+     */
+    private void trackOrder(OrderInfoUpdate orderInfoUpdate) {
+        RecordedOrder order = orders.get(orderInfoUpdate.orderId);
+        if (order == null) {
+            // fills of an order working before it was seen are not executed again,
+            // but an order seen first when it is done may still get its executions
+            int executedSize = orderInfoUpdate.status.isActive() ? orderInfoUpdate.filled : 0;
+            order = new RecordedOrder(orderInfoUpdate.instrumentAlias, executedSize);
+            orders.put(orderInfoUpdate.orderId, order);
+        }
+        if (!orderInfoUpdate.status.isActive() && order.finalFilled == -1) {
+            order.finalFilled = orderInfoUpdate.filled;
+            if (order.isDone()) {
+                orders.remove(orderInfoUpdate.orderId);
+            } else {
+                finishedOrders.add(orderInfoUpdate.orderId);
+                // executions that never came should not keep orders forever
+                if (finishedOrders.size() > MAX_FINISHED_ORDERS) {
+                    String oldestOrderId = finishedOrders.poll();
+                    RecordedOrder oldestOrder = orders.get(oldestOrderId);
+                    if (oldestOrder != null && oldestOrder.finalFilled != -1) {
+                        orders.remove(oldestOrderId);
+                    }
+                }
             }
         }
     }
+
+    private static class RecordedOrder {
+        private final String alias;
+        private int executedSize;
+        /** Filled size from the update that made order inactive, -1 while it is active */
+        private int finalFilled = -1;
+
+        RecordedOrder(String alias, int executedSize) {
+            this.alias = alias;
+            this.executedSize = executedSize;
+        }
+
+        boolean isDone() {
+            return finalFilled != -1 && executedSize >= finalFilled;
+        }
+    }
 }
@@ -0,0 +1,168 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+/**
+ * Options of {@link FeedRecorder}, read once when it is loaded. Defaults can
+ * be overridden with system properties prefixed with {@value #PROPERTY_PREFIX}
+ * (e.g. <code>-Dvelox.demo.feedrecorder.format=binary</code>).
+ */
+public class FeedRecorderOptions {
+    public static final String PROPERTY_PREFIX = "velox.demo.feedrecorder.";
+
+    public enum Format {
+        /** {@link SpecificFormatRecorder}, depth and orders in separate text files */
+        TEXT,
+        /** {@link BinaryFormatRecorder}, everything in one file */
+        BINARY,
+        /** {@link BinaryFormatRecorder}, each instrument in its own {@link SegmentedRecordOutput} */
+        SEGMENTED,
+        /** {@link BinaryFormatRecorder}, everything in one {@link CompressedRecordOutput} */
+        COMPRESSED
+    }
+
+    private Format format = Format.TEXT;
+    private String directory = System.getProperty("user.dir");
+    private boolean isAsyncWriting = true;
+    private int asyncRingSize = 4 * 1024 * 1024;
+    private int groupCommitBytes = 64 * 1024;
+    private long groupCommitDelayMs = 100;
+    private AsyncRecordOutput.SyncPolicy syncPolicy = AsyncRecordOutput.SyncPolicy.ON_CLOSE;
+    private long syncIntervalMs = 1000;
+    private int segmentSize = 256 * 1024 * 1024;
+    private SegmentedRecordOutput.RetentionPolicy retentionPolicy = SegmentedRecordOutput.RetentionPolicy.KEEP;
+    private int retainedSegmentsNumber = 16;
+    private int compressionBlockSize = CompressedRecordOutput.DEFAULT_BLOCK_SIZE;
+
+    public static FeedRecorderOptions fromSystemProperties() {
+        FeedRecorderOptions options = new FeedRecorderOptions();
+        options.setFormat(Format.valueOf(System.getProperty(PROPERTY_PREFIX + "format", options.getFormat().name()).toUpperCase()));
+        options.setDirectory(System.getProperty(PROPERTY_PREFIX + "directory", options.getDirectory()));
+        options.setAsyncWriting(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "async", "true")));
+        options.setAsyncRingSize(Integer.getInteger(PROPERTY_PREFIX + "asyncRingSize", options.getAsyncRingSize()));
+        options.setGroupCommitBytes(Integer.getInteger(PROPERTY_PREFIX + "groupCommitBytes", options.getGroupCommitBytes()));
+        options.setGroupCommitDelayMs(Long.getLong(PROPERTY_PREFIX + "groupCommitDelayMs", options.getGroupCommitDelayMs()));
+        options.setSyncPolicy(AsyncRecordOutput.SyncPolicy.valueOf(
+                System.getProperty(PROPERTY_PREFIX + "syncPolicy", options.getSyncPolicy().name()).toUpperCase()));
+        options.setSyncIntervalMs(Long.getLong(PROPERTY_PREFIX + "syncIntervalMs", options.getSyncIntervalMs()));
+        options.setSegmentSize(Integer.getInteger(PROPERTY_PREFIX + "segmentSize", options.getSegmentSize()));
+        options.setRetentionPolicy(SegmentedRecordOutput.RetentionPolicy.valueOf(
+                System.getProperty(PROPERTY_PREFIX + "retentionPolicy", options.getRetentionPolicy().name()).toUpperCase()));
+        options.setRetainedSegmentsNumber(Integer.getInteger(PROPERTY_PREFIX + "retainedSegments", options.getRetainedSegmentsNumber()));
+        options.setCompressionBlockSize(Integer.getInteger(PROPERTY_PREFIX + "compressionBlockSize", options.getCompressionBlockSize()));
+        return options;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Directory to create recording files in, working directory by default
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * If true, records (text and binary) are written to the file by a
+     * separate thread (see {@link AsyncRecordOutput}), otherwise text records
+     * are written right away
+     */
+    public boolean isAsyncWriting() {
+        return isAsyncWriting;
+    }
+
+    public void setAsyncWriting(boolean isAsyncWriting) {
+        this.isAsyncWriting = isAsyncWriting;
+    }
+
+    public int getAsyncRingSize() {
+        return asyncRingSize;
+    }
+
+    public void setAsyncRingSize(int asyncRingSize) {
+        this.asyncRingSize = asyncRingSize;
+    }
+
+    public int getGroupCommitBytes() {
+        return groupCommitBytes;
+    }
+
+    public void setGroupCommitBytes(int groupCommitBytes) {
+        this.groupCommitBytes = groupCommitBytes;
+    }
+
+    public long getGroupCommitDelayMs() {
+        return groupCommitDelayMs;
+    }
+
+    public void setGroupCommitDelayMs(long groupCommitDelayMs) {
+        this.groupCommitDelayMs = groupCommitDelayMs;
+    }
+
+    public AsyncRecordOutput.SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public void setSyncPolicy(AsyncRecordOutput.SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    public long getSyncIntervalMs() {
+        return syncIntervalMs;
+    }
+
+    public void setSyncIntervalMs(long syncIntervalMs) {
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    /**
+     * Size of each file of {@link Format#SEGMENTED} recordings, in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public SegmentedRecordOutput.RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public void setRetentionPolicy(SegmentedRecordOutput.RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    /**
+     * Number of the latest segments of each instrument the retention policy
+     * leaves as they are
+     */
+    public int getRetainedSegmentsNumber() {
+        return retainedSegmentsNumber;
+    }
+
+    public void setRetainedSegmentsNumber(int retainedSegmentsNumber) {
+        this.retainedSegmentsNumber = retainedSegmentsNumber;
+    }
+
+    /**
+     * Uncompressed size of blocks of {@link Format#COMPRESSED} recordings, in
+     * bytes. Smaller blocks make seeking cheaper and compression worse.
+     */
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    public void setCompressionBlockSize(int compressionBlockSize) {
+        this.compressionBlockSize = compressionBlockSize;
+    }
+}
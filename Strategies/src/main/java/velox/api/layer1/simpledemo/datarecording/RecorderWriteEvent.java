@@ -0,0 +1,24 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one record written by {@link FeedRecorder}
+ */
+@Name("velox.recorder.Write")
+@Label("Feed Recorder Write")
+@Category({"Bookmap", "Feed Recorder"})
+@Description("Writing of one depth, trade, instrument or order record")
+@StackTrace(false)
+public class RecorderWriteEvent extends Event {
+    @Label("Record Type")
+    String recordType;
+
+    @Label("Instrument")
+    String alias;
+}
@@ -0,0 +1,187 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import velox.api.layer1.common.Log;
+
+/**
+ * Writes records into fixed-size memory mapped files (segments), so a record
+ * is a few stores into the mapped region and no system calls are made until
+ * the segment is full. Then the next segment is created and the recorder
+ * starts over (see {@link BinaryRecordOutput#getSegmentNumber()}), so each
+ * segment can be read on its own. Unused tail of a segment is left zeroed.
+ * <p>
+ * Segments are named <code>&lt;name&gt;_&lt;start time, UTC&gt;_&lt;number&gt;.bfs</code>.
+ * Optionally only the latest segments of the same name are kept, older ones
+ * are deleted or compressed in background. Not thread safe.
+ */
+public class SegmentedRecordOutput implements BinaryRecordOutput {
+
+    public static final String SEGMENT_EXTENSION = ".bfs";
+
+    public enum RetentionPolicy {
+        /** Keep all segments */
+        KEEP,
+        /** Delete segments older than the retained ones */
+        DELETE,
+        /** Gzip segments older than the retained ones */
+        COMPRESS
+    }
+
+    private static final DateTimeFormatter SEGMENT_TIME_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private static ExecutorService retentionExecutor;
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+    private final RetentionPolicy retentionPolicy;
+    private final int retainedSegmentsNumber;
+
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+
+    /**
+     * @param name segments name prefix, e.g. instrument alias (characters not
+     *            allowed in file names are replaced)
+     * @param retainedSegmentsNumber number of the latest segments retention
+     *            policy keeps untouched, including the current one
+     */
+    public SegmentedRecordOutput(Path directory, String name, int segmentSize, RetentionPolicy retentionPolicy,
+            int retainedSegmentsNumber) throws IOException {
+        this.directory = directory;
+        this.name = name.replaceAll("[^A-Za-z0-9.-]", "_");
+        this.segmentSize = segmentSize;
+        this.retentionPolicy = retentionPolicy;
+        this.retainedSegmentsNumber = Math.max(1, retainedSegmentsNumber);
+        segment = mapSegment();
+    }
+
+    /**
+     * A claim never moves to the next segment if nothing was put into the
+     * current one yet, so the recorder can put segment headers and the first
+     * record at once.
+     */
+    @Override
+    public ByteBuffer claim(int size) throws IOException {
+        if (segment.remaining() < size) {
+            if (size > segmentSize) {
+                throw new IOException("Record of " + size + " bytes does not fit into a segment");
+            }
+            rollOver();
+        }
+        return segment;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    /**
+     * Mapped memory is written to the file by the operating system, forcing
+     * it to the disk is only done on rollover and close
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        // mapping is released once the buffer is garbage collected
+        segment.force();
+    }
+
+    private void rollOver() throws IOException {
+        segment.force();
+        segmentNumber++;
+        segment = mapSegment();
+        if (retentionPolicy != RetentionPolicy.KEEP) {
+            getRetentionExecutor().execute(this::applyRetention);
+        }
+    }
+
+    private MappedByteBuffer mapSegment() throws IOException {
+        String fileName = String.format("%s_%s_%04d%s", name, SEGMENT_TIME_FORMATTER.format(Instant.now()),
+                segmentNumber, SEGMENT_EXTENSION);
+        try (FileChannel channel = FileChannel.open(directory.resolve(fileName), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private void applyRetention() {
+        List<Path> segments = new ArrayList<>();
+        // not a glob, as it would also match segments of e.g. "ES_X" for "ES"
+        Pattern namePattern = Pattern.compile(Pattern.quote(name) + "_\\d{8}-\\d{6}-\\d{3}_\\d+" + Pattern.quote(SEGMENT_EXTENSION));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                file -> namePattern.matcher(file.getFileName().toString()).matches())) {
+            stream.forEach(segments::add);
+        } catch (IOException e) {
+            Log.warn("FeedRecorder: failed to list segments of " + name, e);
+            return;
+        }
+        // names sort by start time
+        Collections.sort(segments);
+        for (Path file: segments.subList(0, Math.max(0, segments.size() - retainedSegmentsNumber))) {
+            try {
+                if (retentionPolicy == RetentionPolicy.COMPRESS) {
+                    compress(file);
+                }
+                Files.delete(file);
+            } catch (IOException e) {
+                // e.g. still mapped on Windows, will be retried on the next rollover
+                Log.warn("FeedRecorder: failed to apply retention to " + file, e);
+            }
+        }
+    }
+
+    private static void compress(Path file) throws IOException {
+        Path compressedFile = Paths.get(file + ".gz");
+        try (InputStream in = Files.newInputStream(file);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile), 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getRetentionExecutor() {
+        if (retentionExecutor == null) {
+            retentionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "FeedRecorder segments retention");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return retentionExecutor;
+    }
+}
@@ -1,8 +1,12 @@
 package velox.api.layer1.simpledemo.datarecording;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 
 import velox.api.layer1.data.InstrumentInfo;
 
@@ -11,70 +15,123 @@ import velox.api.layer1.data.InstrumentInfo;
  * opened in a text editor and reviewed. It contains some unused fields - the
  * only reason those exist is to make it readable by one of our internal tools
  * for testing purpose.
+ * <p>
+ * Lines are written through {@link BinaryRecordOutput}s, so the text format
+ * can use the same asynchronous writer (and its sync policy) as the binary
+ * ones. Not thread safe.
  */
 public class SpecificFormatRecorder {
 
     private static final String EOL = System.getProperty("line.separator");
     private static final char DELIMITER = ',';
 
-    private FileWriter depthWriter;
-    private FileWriter ordersWriter;
+    private final BinaryRecordOutput depthOutput;
+    private final BinaryRecordOutput ordersOutput;
+    private final boolean isFlushEachRecord;
 
+    /** Line being put together, reused */
+    private final StringBuilder line = new StringBuilder();
+    private CharBuffer lineChars = CharBuffer.allocate(256);
+    /** Same charset as the {@link java.io.FileWriter} used before */
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Writes each record to the file as soon as it is recorded
+     */
     public SpecificFormatRecorder(long time, File depth, File orders, String dataSource) throws IOException {
-        depthWriter = new FileWriter(depth);
-        ordersWriter = new FileWriter(orders);
+        this(time, new ChannelRecordOutput(depth.toPath()), new ChannelRecordOutput(orders.toPath()), dataSource, true);
+    }
 
-        depthWriter
+    /**
+     * @param isFlushEachRecord if true, each record is pushed to the output
+     *            right away, otherwise it is left to the output when to write
+     */
+    public SpecificFormatRecorder(long time, BinaryRecordOutput depthOutput, BinaryRecordOutput ordersOutput,
+            String dataSource, boolean isFlushEachRecord) throws IOException {
+        this.depthOutput = depthOutput;
+        this.ordersOutput = ordersOutput;
+        this.isFlushEachRecord = isFlushEachRecord;
+
+        line
                 .append(SpecificFormatTags.ON_FEED_SOURCE)
-                .append(DELIMITER).append(Long.toString(time))
-                .append(DELIMITER).append(Integer.toString(-1))
-                .append(DELIMITER).append(dataSource)
-                .append(EOL);
+                .append(DELIMITER).append(time)
+                .append(DELIMITER).append(-1)
+                .append(DELIMITER).append(dataSource);
+        writeLine(depthOutput);
     }
 
     public void onTrade(int id, double price, int size, int aggressor, int otcCode) throws IOException {
-        depthWriter
+        line
                 .append(SpecificFormatTags.ON_TRADE)
-                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
-                .append(DELIMITER).append(Integer.toString(id))
-                .append(DELIMITER).append(Double.toString(price))
-                .append(DELIMITER).append(Integer.toString(size))
-                .append(DELIMITER).append(Integer.toString(aggressor))
-                .append(DELIMITER).append(Integer.toString(otcCode))
-                .append(EOL);
-        depthWriter.flush();
+                .append(DELIMITER).append(System.currentTimeMillis())
+                .append(DELIMITER).append(id)
+                .append(DELIMITER).append(price)
+                .append(DELIMITER).append(size)
+                .append(DELIMITER).append(aggressor)
+                .append(DELIMITER).append(otcCode);
+        writeLine(depthOutput);
     }
 
     public void onDepth(int id, boolean isBid, double price, int size) throws IOException {
-        depthWriter
+        line
                 .append(SpecificFormatTags.ON_BOOK_UPDATE)
-                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
-                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(System.currentTimeMillis())
+                .append(DELIMITER).append(id)
                 .append(DELIMITER)
-                .append(Integer.toString(isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE))
-                .append(DELIMITER).append(Double.toString(price))
-                .append(DELIMITER).append(Integer.toString(size))
-                .append(EOL);
-        depthWriter.flush();
+                .append(isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE)
+                .append(DELIMITER).append(price)
+                .append(DELIMITER).append(size);
+        writeLine(depthOutput);
     }
 
     public void onInstrumentAdded(int id, InstrumentInfo instrumentInfo) throws IOException {
-        depthWriter
+        line
                 .append(SpecificFormatTags.ON_CONTRACT_DETAILS)
-                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
-                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(System.currentTimeMillis())
+                .append(DELIMITER).append(id)
                 .append(DELIMITER).append(instrumentInfo.exchange)
                 .append(DELIMITER).append(instrumentInfo.symbol)
                 .append(DELIMITER).append(instrumentInfo.type)
-                .append(DELIMITER).append(Double.toString(instrumentInfo.pips))
-                .append(DELIMITER).append(Double.toString(instrumentInfo.multiplier))
-                .append(DELIMITER).append("0")
-                .append(EOL);
-        depthWriter.flush();
+                .append(DELIMITER).append(instrumentInfo.pips)
+                .append(DELIMITER).append(instrumentInfo.multiplier)
+                .append(DELIMITER).append("0");
+        writeLine(depthOutput);
     }
 
     public void onOrderData(String data) throws IOException {
-        ordersWriter.append(data).append(EOL);
-        ordersWriter.flush();
+        line.append(data);
+        writeLine(ordersOutput);
+    }
+
+    public void close() throws IOException {
+        try {
+            depthOutput.close();
+        } finally {
+            ordersOutput.close();
+        }
+    }
+
+    /**
+     * Encodes the line with the end of line into the output and clears it
+     */
+    private void writeLine(BinaryRecordOutput output) throws IOException {
+        line.append(EOL);
+        if (lineChars.capacity() < line.length()) {
+            lineChars = CharBuffer.allocate(Integer.highestOneBit(line.length()) << 1);
+        }
+        lineChars.clear();
+        lineChars.append(line).flip();
+        line.setLength(0);
+
+        ByteBuffer buffer = output.claim((int) Math.ceil(lineChars.remaining() * encoder.maxBytesPerChar()));
+        encoder.reset();
+        encoder.encode(lineChars, buffer, true);
+        encoder.flush(buffer);
+        output.commit();
+        if (isFlushEachRecord) {
+            output.flush();
+        }
     }
 }